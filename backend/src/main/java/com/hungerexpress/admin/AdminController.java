@@ -2,13 +2,16 @@ package com.hungerexpress.admin;
 
 import com.hungerexpress.user.User;
 import com.hungerexpress.user.UserRepository;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
 import com.hungerexpress.restaurant.Restaurant;
 import com.hungerexpress.restaurant.RestaurantRepository;
 import com.hungerexpress.orders.OrderEntity;
-import com.hungerexpress.orders.OrderRepository;
+import com.hungerexpress.orders.OrderPageQuery;
 import com.hungerexpress.orders.OrderStatus;
+import com.hungerexpress.orders.OrderTransitions;
 import com.hungerexpress.common.CurrentUser;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,8 +24,10 @@ import java.util.Optional;
 public class AdminController {
     private final UserRepository users;
     private final RestaurantRepository restaurants;
-    private final OrderRepository orders;
     private final AdminAuditLogRepository audits;
+    private final OrderPageQuery pages;
+    private final ApplicationEventPublisher events;
+    private final OrderTransitions transitions;
 
     @GetMapping("/users")
     public List<User> listUsers(@RequestParam(required = false) String q){
@@ -77,6 +82,7 @@ public class AdminController {
         return restaurants.findById(id).map(r -> {
             r.setApproved(approved);
             restaurants.save(r);
+            events.publishEvent(CatalogChangedEvent.listing(r.getId()));
             String actor = Optional.ofNullable(CurrentUser.email()).orElse("system");
             audits.save(AdminAuditLog.builder().actorEmail(actor).action("RESTAURANT_APPROVE")
                     .target("restaurant:"+r.getId()).details("approved="+approved).build());
@@ -89,6 +95,7 @@ public class AdminController {
         return restaurants.findById(id).map(r -> {
             r.setActive(active);
             restaurants.save(r);
+            events.publishEvent(CatalogChangedEvent.listing(r.getId()));
             String actor = Optional.ofNullable(CurrentUser.email()).orElse("system");
             audits.save(AdminAuditLog.builder().actorEmail(actor).action("RESTAURANT_ACTIVE")
                     .target("restaurant:"+r.getId()).details("active="+active).build());
@@ -98,20 +105,20 @@ public class AdminController {
 
     // Orders oversight
     @GetMapping("/orders")
-    public List<OrderEntity> listOrders(@RequestParam(required = false) OrderStatus status,
-                                        @RequestParam(required = false) Long userId){
-        List<OrderEntity> all = orders.findAll();
-        return all.stream().filter(o ->
-                (status == null || status.equals(o.getStatus()))
-             && (userId == null || userId.equals(o.getUserId()))
-        ).toList();
+    public ResponseEntity<List<OrderEntity>> listOrders(@RequestParam(required = false) OrderStatus status,
+                                                        @RequestParam(required = false) Long userId,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit){
+        OrderPageQuery.Page page = pages.fetch(
+                OrderPageQuery.Filter.builder().status(status).userId(userId).build(), cursor, limit);
+        return OrderPageQuery.ok(page).body(page.orders());
     }
 
     @PatchMapping("/orders/{id}/status")
-    public ResponseEntity<OrderEntity> overrideOrderStatus(@PathVariable Long id, @RequestParam OrderStatus status){
-        return orders.findById(id).map(o -> {
-            o.setStatus(status);
-            orders.save(o);
+    public ResponseEntity<OrderEntity> overrideOrderStatus(@PathVariable Long id, @RequestParam OrderStatus status,
+                                                           @RequestParam(required = false) Long version){
+        // Bypasses the transition table, but not a concurrent change: 409 if the order moved meanwhile
+        return transitions.override(id, status, version).map(o -> {
             String actor = Optional.ofNullable(CurrentUser.email()).orElse("system");
             audits.save(AdminAuditLog.builder().actorEmail(actor).action("ORDER_STATUS_OVERRIDE")
                     .target("order:"+o.getId()).details("status="+status.name()).build());
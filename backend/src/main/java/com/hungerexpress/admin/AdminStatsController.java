@@ -1,17 +1,15 @@
 package com.hungerexpress.admin;
 
-import com.hungerexpress.orders.OrderEntity;
-import com.hungerexpress.orders.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
-import java.time.Instant;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,7 +17,8 @@ import java.util.stream.Collectors;
 @RequestMapping("/api/admin/stats")
 @RequiredArgsConstructor
 public class AdminStatsController {
-    private final OrderRepository orders;
+    private final DailyOrderMetricsRepository metrics;
+    private final OrderMetricsService metricsService;
 
     record Series(List<String> labels, List<Number> values){}
     record Top(String name, Number value){}
@@ -28,13 +27,13 @@ public class AdminStatsController {
     public ResponseEntity<Series> ordersPerDay(){
         LocalDate today = LocalDate.now();
         List<String> labels = new ArrayList<>();
-        Map<String, Integer> map = new LinkedHashMap<>();
+        Map<String, Long> map = new LinkedHashMap<>();
         for (int i=6;i>=0;i--){
-            String d = today.minusDays(i).toString(); labels.add(d); map.put(d, 0);
+            String d = today.minusDays(i).toString(); labels.add(d); map.put(d, 0L);
         }
-        orders.findAll().forEach(o -> {
-            String d = LocalDate.ofInstant(o.getCreatedAt(), ZoneId.systemDefault()).toString();
-            if (map.containsKey(d)) map.put(d, map.get(d)+1);
+        metrics.findByMetricDateBetween(today.minusDays(6), today).forEach(m -> {
+            String d = m.getMetricDate().toString();
+            if (map.containsKey(d)) map.put(d, map.get(d) + m.getOrderCount());
         });
         return ResponseEntity.ok(new Series(labels, new ArrayList<>(map.values())));
     }
@@ -47,9 +46,9 @@ public class AdminStatsController {
         for (int i=6;i>=0;i--){
             String d = today.minusDays(i).toString(); labels.add(d); map.put(d, BigDecimal.ZERO);
         }
-        orders.findAll().forEach(o -> {
-            String d = LocalDate.ofInstant(o.getCreatedAt(), ZoneId.systemDefault()).toString();
-            if (map.containsKey(d)) map.put(d, map.get(d).add(o.getTotal()));
+        metrics.findByMetricDateBetween(today.minusDays(6), today).forEach(m -> {
+            String d = m.getMetricDate().toString();
+            if (map.containsKey(d)) map.put(d, map.get(d).add(m.getGmv()));
         });
         List<Number> values = map.values().stream()
                 .map(BigDecimal::doubleValue)
@@ -60,16 +59,16 @@ public class AdminStatsController {
 
     @GetMapping("/top-restaurants")
     public ResponseEntity<List<Top>> topRestaurants(){
-        Map<Long, BigDecimal> sums = new HashMap<>();
-        orders.findAll().forEach(o -> {
-            Long rid = o.getRestaurantId()!=null? o.getRestaurantId() : 0L;
-            sums.put(rid, sums.getOrDefault(rid, BigDecimal.ZERO).add(o.getTotal()));
-        });
-        List<Top> tops = sums.entrySet().stream()
-                .sorted((a,b) -> b.getValue().compareTo(a.getValue()))
-                .limit(5)
-                .map(e -> new Top("R-"+e.getKey(), e.getValue()))
+        List<Top> tops = metrics.topRestaurantsByGmv(PageRequest.of(0, 5)).stream()
+                .map(r -> new Top("R-"+r[0], (BigDecimal) r[1]))
                 .toList();
         return ResponseEntity.ok(tops);
     }
+
+    // Rebuild the daily rollup from order history (repair / after bulk imports)
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild(){
+        int rows = metricsService.rebuild();
+        return ResponseEntity.ok(Map.of("rows", rows));
+    }
 }
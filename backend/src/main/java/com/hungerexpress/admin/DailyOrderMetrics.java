@@ -0,0 +1,49 @@
+package com.hungerexpress.admin;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Per-day, per-restaurant order counters. Maintained incrementally from order lifecycle events
+ * and rebuildable from history by {@link OrderMetricsService#rebuild()}.
+ * Orders without a restaurant are bucketed under restaurant id 0.
+ */
+@Entity
+@Table(name = "daily_order_metrics",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"metric_date", "restaurant_id"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class DailyOrderMetrics {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "metric_date", nullable = false)
+    private LocalDate metricDate;
+
+    @Column(name = "restaurant_id", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "order_count", nullable = false)
+    @Builder.Default
+    private Long orderCount = 0L;
+
+    @Column(name = "gmv", nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal gmv = BigDecimal.ZERO;
+
+    @Column(name = "discount", nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal discount = BigDecimal.ZERO;
+
+    @Column(name = "delivered_count", nullable = false)
+    @Builder.Default
+    private Long deliveredCount = 0L;
+
+    @Column(name = "cancelled_count", nullable = false)
+    @Builder.Default
+    private Long cancelledCount = 0L;
+}
@@ -0,0 +1,29 @@
+package com.hungerexpress.admin;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyOrderMetricsRepository extends JpaRepository<DailyOrderMetrics, Long> {
+
+    List<DailyOrderMetrics> findByMetricDateBetween(LocalDate from, LocalDate to);
+
+    // Atomic in-place increment; returns 0 when the (date, restaurant) row doesn't exist yet
+    @Modifying
+    @Query("UPDATE DailyOrderMetrics m SET m.orderCount = m.orderCount + :orders, m.gmv = m.gmv + :gmv, " +
+           "m.discount = m.discount + :discount, m.deliveredCount = m.deliveredCount + :delivered, " +
+           "m.cancelledCount = m.cancelledCount + :cancelled " +
+           "WHERE m.metricDate = :date AND m.restaurantId = :restaurantId")
+    int increment(@Param("date") LocalDate date, @Param("restaurantId") Long restaurantId,
+                  @Param("orders") long orders, @Param("gmv") BigDecimal gmv, @Param("discount") BigDecimal discount,
+                  @Param("delivered") long delivered, @Param("cancelled") long cancelled);
+
+    @Query("SELECT m.restaurantId, SUM(m.gmv) FROM DailyOrderMetrics m GROUP BY m.restaurantId ORDER BY SUM(m.gmv) DESC")
+    List<Object[]> topRestaurantsByGmv(Pageable pageable);
+}
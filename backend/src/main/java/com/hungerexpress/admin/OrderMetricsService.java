@@ -0,0 +1,148 @@
+package com.hungerexpress.admin;
+
+import com.hungerexpress.orders.OrderLifecycleEvent;
+import com.hungerexpress.orders.OrderRepository;
+import com.hungerexpress.orders.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@link DailyOrderMetrics} current: one atomic counter update per order lifecycle event,
+ * plus a chunked rebuild from the orders table for first start and repair.
+ */
+@Service
+@Slf4j
+public class OrderMetricsService {
+
+    private static final int REBUILD_CHUNK = 5000;
+
+    private final DailyOrderMetricsRepository metrics;
+    private final OrderRepository orders;
+    private final TransactionTemplate tx;
+
+    public OrderMetricsService(DailyOrderMetricsRepository metrics, OrderRepository orders,
+                               PlatformTransactionManager txManager) {
+        this.metrics = metrics;
+        this.orders = orders;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    record Delta(long orders, BigDecimal gmv, BigDecimal discount, long delivered, long cancelled) {
+        boolean isEmpty() {
+            return orders == 0 && delivered == 0 && cancelled == 0 && gmv.signum() == 0 && discount.signum() == 0;
+        }
+    }
+
+    // After the order's own transaction commits (or immediately when there is none)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderLifecycle(OrderLifecycleEvent e) {
+        try {
+            long delivered = e.entered(OrderStatus.DELIVERED) ? 1 : e.left(OrderStatus.DELIVERED) ? -1 : 0;
+            long cancelled = e.entered(OrderStatus.CANCELLED) ? 1 : e.left(OrderStatus.CANCELLED) ? -1 : 0;
+            Delta d = e.isPlacement()
+                    ? new Delta(1, nz(e.total()), nz(e.discount()), delivered, cancelled)
+                    : new Delta(0, BigDecimal.ZERO, BigDecimal.ZERO, delivered, cancelled);
+            if (d.isEmpty()) return;
+            apply(dayOf(e.createdAt()), bucket(e.restaurantId()), d);
+        } catch (Exception ex) {
+            log.error("Failed to update daily metrics for order {}: {}", e.orderId(), ex.getMessage(), ex);
+        }
+    }
+
+    private void apply(LocalDate date, Long restaurantId, Delta d) {
+        try {
+            tx.executeWithoutResult(s -> upsert(date, restaurantId, d));
+        } catch (DataIntegrityViolationException raced) {
+            // another request inserted the row first; it exists now, so the retry takes the UPDATE path
+            tx.executeWithoutResult(s -> upsert(date, restaurantId, d));
+        }
+    }
+
+    private void upsert(LocalDate date, Long restaurantId, Delta d) {
+        int updated = metrics.increment(date, restaurantId, d.orders(), d.gmv(), d.discount(), d.delivered(), d.cancelled());
+        if (updated == 0) {
+            metrics.saveAndFlush(DailyOrderMetrics.builder()
+                    .metricDate(date)
+                    .restaurantId(restaurantId)
+                    .orderCount(d.orders())
+                    .gmv(d.gmv())
+                    .discount(d.discount())
+                    .deliveredCount(d.delivered())
+                    .cancelledCount(d.cancelled())
+                    .build());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (metrics.count() == 0 && orders.count() > 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recomputes every rollup row from the orders table, scanning it in id-ordered chunks of
+     * projected columns. Intended for first start and repair; lifecycle updates that land while a
+     * rebuild is running may be overwritten, so run it when order traffic is quiet.
+     */
+    public int rebuild() {
+        Map<String, DailyOrderMetrics> acc = new HashMap<>();
+        long afterId = 0L;
+        long scanned = 0;
+        while (true) {
+            List<Object[]> rows = orders.findMetricRowsAfter(afterId, PageRequest.of(0, REBUILD_CHUNK));
+            if (rows.isEmpty()) break;
+            for (Object[] r : rows) {
+                Long rid = bucket((Long) r[1]);
+                LocalDate date = dayOf((Instant) r[2]);
+                OrderStatus status = (OrderStatus) r[5];
+                DailyOrderMetrics m = acc.computeIfAbsent(date + ":" + rid, k -> DailyOrderMetrics.builder()
+                        .metricDate(date).restaurantId(rid).build());
+                m.setOrderCount(m.getOrderCount() + 1);
+                m.setGmv(m.getGmv().add(nz((BigDecimal) r[3])));
+                m.setDiscount(m.getDiscount().add(nz((BigDecimal) r[4])));
+                if (status == OrderStatus.DELIVERED) m.setDeliveredCount(m.getDeliveredCount() + 1);
+                if (status == OrderStatus.CANCELLED) m.setCancelledCount(m.getCancelledCount() + 1);
+            }
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+            scanned += rows.size();
+        }
+        List<DailyOrderMetrics> rebuilt = new ArrayList<>(acc.values());
+        tx.executeWithoutResult(s -> {
+            metrics.deleteAllInBatch();
+            metrics.saveAll(rebuilt);
+        });
+        log.info("Rebuilt daily order metrics: {} rows from {} orders", rebuilt.size(), scanned);
+        return rebuilt.size();
+    }
+
+    static LocalDate dayOf(Instant at) {
+        return LocalDate.ofInstant(at != null ? at : Instant.now(), ZoneId.systemDefault());
+    }
+
+    private static Long bucket(Long restaurantId) {
+        return restaurantId != null ? restaurantId : 0L;
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v != null ? v : BigDecimal.ZERO;
+    }
+}
@@ -2,13 +2,15 @@ package com.hungerexpress.agent;
 
 import com.hungerexpress.orders.OrderEntity;
 import com.hungerexpress.orders.OrderRepository;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import com.hungerexpress.tracking.AgentLocationIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Comparator;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -19,8 +21,13 @@ import java.util.Optional;
 @Slf4j
 public class AgentAssignmentService {
     
+    // How far from the restaurant an agent may be to be picked for it
+    private static final double ASSIGN_RADIUS_KM = 10.0;
+    
     private final AgentProfileRepository agentProfileRepository;
     private final OrderRepository orderRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final AgentLocationIndex locationIndex;
     
     /**
      * Automatically assign an order to the best available agent
@@ -38,40 +45,43 @@ public class AgentAssignmentService {
     }
     
     /**
-     * Find the best available agent for assignment
-     * Priority: Online status > Lowest active orders > Highest rating
+     * Find the best available agent for assignment: the one nearest the order's restaurant (a grid
+     * lookup in the location index), else the highest rated online agent when the restaurant has no
+     * coordinates or nobody is close. Only the winner is loaded.
      */
-    private Optional<AgentProfile> findBestAvailableAgent() {
-        // Get all online agents
-        List<AgentProfile> onlineAgents = agentProfileRepository.findAll().stream()
-            .filter(agent -> Boolean.TRUE.equals(agent.getIsAvailable()))
-            .toList();
-        
-        if (onlineAgents.isEmpty()) {
+    private Optional<AgentProfile> findBestAvailableAgent(OrderEntity order) {
+        Optional<AgentLocationIndex.AgentPoint> best = restaurantPosition(order.getRestaurantId())
+            .flatMap(at -> locationIndex.nearest(at[0], at[1], 1, ASSIGN_RADIUS_KM).stream().findFirst())
+            .map(AgentLocationIndex.Nearby::agent);
+        if (best.isEmpty()) {
+            best = locationIndex.availableAgents().stream()
+                .max(Comparator.comparingDouble((AgentLocationIndex.AgentPoint a) -> a.rating() != null ? a.rating() : 0.0));
+        }
+        return best.flatMap(a -> agentProfileRepository.findByUserId(a.agentId()));
+    }
+    
+    private Optional<double[]> restaurantPosition(Long restaurantId) {
+        if (restaurantId == null) return Optional.empty();
+        Restaurant r = restaurantRepository.findById(restaurantId).orElse(null);
+        if (r == null || r.getLatitude() == null || r.getLongitude() == null) return Optional.empty();
+        try {
+            return Optional.of(new double[]{Double.parseDouble(r.getLatitude().trim()), Double.parseDouble(r.getLongitude().trim())});
+        } catch (NumberFormatException e) {
             return Optional.empty();
         }
-        
-        // For now, simple selection: first available agent
-        // TODO: Enhance with distance-based assignment using GPS coordinates
-        return onlineAgents.stream()
-            .sorted(Comparator.comparing(AgentProfile::getRating, Comparator.reverseOrder()))
-            .findFirst();
     }
     
     /**
      * Check if there are any available agents
      */
     public boolean hasAvailableAgents() {
-        return agentProfileRepository.findAll().stream()
-            .anyMatch(agent -> Boolean.TRUE.equals(agent.getIsAvailable()));
+        return locationIndex.availableCount() > 0;
     }
     
     /**
      * Get count of available agents
      */
     public long countAvailableAgents() {
-        return agentProfileRepository.findAll().stream()
-            .filter(agent -> Boolean.TRUE.equals(agent.getIsAvailable()))
-            .count();
+        return locationIndex.availableCount();
     }
 }
@@ -1,10 +1,15 @@
 package com.hungerexpress.agent;
 
 import com.hungerexpress.common.CurrentUser;
+import com.hungerexpress.orders.OrderConflictException;
+import com.hungerexpress.orders.OrderStatus;
+import com.hungerexpress.orders.OrderTransitions;
+import com.hungerexpress.tracking.AgentLocationIndex;
 import com.hungerexpress.user.User;
 import com.hungerexpress.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -36,6 +41,12 @@ public class AgentController {
     @Autowired
     private AgentTransactionRepository transactionRepository;
 
+    @Autowired
+    private OrderTransitions transitions;
+
+    @Autowired
+    private AgentLocationIndex locationIndex;
+
     /**
      * Get agent overview/dashboard stats
      */
@@ -90,21 +101,16 @@ public class AgentController {
      */
     @GetMapping("/availability")
     public ResponseEntity<Map<String, Object>> getAvailability() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        AgentProfile profile = agentProfileRepository.findByUserId(user.getId())
-            .orElseGet(() -> createDefaultAgentProfile(user.getId()));
+        AgentProfile profile = agentProfileRepository.findByUserId(agentId)
+            .orElseGet(() -> createDefaultAgentProfile(agentId));
 
         LocalDate today = LocalDate.now();
-        int todayDeliveries = agentOrderRepository.countTodayDeliveries(user.getId(), today);
+        int todayDeliveries = agentOrderRepository.countTodayDeliveries(agentId, today);
         double todayOnlineHours = calculateTodayOnlineHours(profile);
 
         Map<String, Object> status = new HashMap<>();
@@ -122,23 +128,19 @@ public class AgentController {
     @PostMapping("/toggle-availability")
     @Transactional
     public ResponseEntity<Map<String, Object>> toggleAvailability(@RequestBody Map<String, Boolean> request) {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        AgentProfile profile = agentProfileRepository.findByUserId(user.getId())
-            .orElseGet(() -> createDefaultAgentProfile(user.getId()));
+        AgentProfile profile = agentProfileRepository.findByUserId(agentId)
+            .orElseGet(() -> createDefaultAgentProfile(agentId));
 
         Boolean newStatus = request.getOrDefault("isAvailable", !profile.getIsAvailable());
         profile.setIsAvailable(newStatus);
         profile.setLastStatusChange(Instant.now());
         agentProfileRepository.save(profile);
+        locationIndex.upsert(profile);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -153,18 +155,13 @@ public class AgentController {
      */
     @GetMapping("/orders")
     public ResponseEntity<List<Map<String, Object>>> getAssignedOrders() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
         // Get orders assigned to this agent
-        List<Map<String, Object>> orders = agentOrderRepository.findActiveOrdersByAgentId(user.getId());
+        List<Map<String, Object>> orders = agentOrderRepository.findActiveOrdersByAgentId(agentId);
 
         return ResponseEntity.ok(orders);
     }
@@ -175,17 +172,12 @@ public class AgentController {
     @PostMapping("/orders/{orderId}/pickup")
     @Transactional
     public ResponseEntity<Map<String, Object>> markPickedUp(@PathVariable Long orderId) {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        boolean success = agentOrderRepository.markAsPickedUp(orderId, user.getId());
+        boolean success = moved(orderId, OrderStatus.OUT_FOR_DELIVERY, agentId);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", success);
@@ -200,17 +192,12 @@ public class AgentController {
     @PostMapping("/orders/{orderId}/deliver")
     @Transactional
     public ResponseEntity<Map<String, Object>> markDelivered(@PathVariable Long orderId) {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        boolean success = agentOrderRepository.markAsDelivered(orderId, user.getId());
+        boolean success = moved(orderId, OrderStatus.DELIVERED, agentId);
         
         // Update agent earnings if delivery was successful
         if (success) {
@@ -224,22 +211,26 @@ public class AgentController {
         return success ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
     }
 
+    // Orders in the wrong state or not this agent's answer {success: false} here, as they always have
+    private boolean moved(Long orderId, OrderStatus to, Long agentId) {
+        try {
+            return transitions.moveAsAgent(orderId, to, agentId).isPresent();
+        } catch (OrderConflictException | AccessDeniedException e) {
+            return false;
+        }
+    }
+
     /**
      * Get map orders (orders with location data)
      */
     @GetMapping("/map/orders")
     public ResponseEntity<List<Map<String, Object>>> getMapOrders() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        List<Map<String, Object>> orders = agentOrderRepository.findOrdersWithLocations(user.getId());
+        List<Map<String, Object>> orders = agentOrderRepository.findOrdersWithLocations(agentId);
 
         return ResponseEntity.ok(orders);
     }
@@ -249,25 +240,20 @@ public class AgentController {
      */
     @GetMapping("/earnings/summary")
     public ResponseEntity<Map<String, Object>> getEarningsSummary() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        AgentProfile profile = agentProfileRepository.findByUserId(user.getId())
-            .orElseGet(() -> createDefaultAgentProfile(user.getId()));
+        AgentProfile profile = agentProfileRepository.findByUserId(agentId)
+            .orElseGet(() -> createDefaultAgentProfile(agentId));
 
         LocalDate today = LocalDate.now();
         double totalEarnings = profile.getTotalEarnings() != null ? profile.getTotalEarnings() : 0.0;
-        double todayEarnings = agentOrderRepository.sumTodayEarnings(user.getId(), today);
-        double weekEarnings = agentOrderRepository.sumWeekEarnings(user.getId(), today);
-        double monthEarnings = agentOrderRepository.sumMonthEarnings(user.getId(), today);
-        int totalDeliveries = agentOrderRepository.countTotalDeliveries(user.getId());
+        double todayEarnings = agentOrderRepository.sumTodayEarnings(agentId, today);
+        double weekEarnings = agentOrderRepository.sumWeekEarnings(agentId, today);
+        double monthEarnings = agentOrderRepository.sumMonthEarnings(agentId, today);
+        int totalDeliveries = agentOrderRepository.countTotalDeliveries(agentId);
         double avgPerDelivery = totalDeliveries > 0 ? totalEarnings / totalDeliveries : 0.0;
 
         Map<String, Object> summary = new HashMap<>();
@@ -288,18 +274,13 @@ public class AgentController {
      */
     @GetMapping("/earnings/transactions")
     public ResponseEntity<List<Map<String, Object>>> getTransactions() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
         // Get recent transactions from the new transaction table
-        List<AgentTransaction> transactions = transactionRepository.findByAgentIdOrderByDeliveredAtDesc(user.getId());
+        List<AgentTransaction> transactions = transactionRepository.findByAgentIdOrderByDeliveredAtDesc(agentId);
         
         // Limit to 50 most recent
         List<AgentTransaction> recentTransactions = transactions.stream()
@@ -334,18 +315,13 @@ public class AgentController {
     @PostMapping("/earnings/payout")
     @Transactional
     public ResponseEntity<Map<String, Object>> requestPayout() {
-        String email = CurrentUser.email();
-        if (email == null) {
+        Long agentId = CurrentUser.id();
+        if (agentId == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(404).build();
-        }
-
-        AgentProfile profile = agentProfileRepository.findByUserId(user.getId())
-            .orElseGet(() -> createDefaultAgentProfile(user.getId()));
+        AgentProfile profile = agentProfileRepository.findByUserId(agentId)
+            .orElseGet(() -> createDefaultAgentProfile(agentId));
 
         double pendingAmount = profile.getPendingPayout() != null ? profile.getPendingPayout() : 0.0;
         
@@ -1,7 +1,6 @@
 package com.hungerexpress.agent;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,6 +15,20 @@ public interface AgentOrderRepository extends JpaRepository<AgentOrderAssignment
     // Find all orders assigned to an agent
     List<AgentOrderAssignment> findByAgentId(Long agentId);
 
+    // Assignment rows joined to their orders in one query: orderId, assignedAt, status, deliveryFee, deliveredAt
+    @Query("SELECT a.orderId, a.assignedAt, o.status, o.deliveryFee, o.deliveredAt " +
+           "FROM AgentOrderAssignment a, com.hungerexpress.orders.OrderEntity o " +
+           "WHERE o.id = a.orderId AND a.agentId = :agentId")
+    List<Object[]> findEarningRowsByAgentId(@Param("agentId") Long agentId);
+
+    // Delivered count and fee sum per agent (zero/missing fees count as :baseFee): agentId, deliveries, fees
+    @Query("SELECT a.agentId, COUNT(o.id), " +
+           "SUM(CASE WHEN o.deliveryFee IS NULL OR o.deliveryFee = 0 THEN :baseFee ELSE o.deliveryFee END) " +
+           "FROM AgentOrderAssignment a, com.hungerexpress.orders.OrderEntity o " +
+           "WHERE o.id = a.orderId AND o.status = com.hungerexpress.orders.OrderStatus.DELIVERED " +
+           "GROUP BY a.agentId")
+    List<Object[]> sumDeliveredFeesByAgent(@Param("baseFee") java.math.BigDecimal baseFee);
+
     // Find latest assignment row for an order
     AgentOrderAssignment findTopByOrderIdOrderByAssignedAtDesc(Long orderId);
 
@@ -103,27 +116,4 @@ public interface AgentOrderRepository extends JpaRepository<AgentOrderAssignment
             "LIMIT :limit",
             nativeQuery = true)
     List<Map<String, Object>> findRecentTransactions(@Param("agentId") Long agentId, @Param("limit") int limit);
-
-    // Mark order as picked up
-    @Modifying
-    @Query(value = "UPDATE orders SET status = 'OUT_FOR_DELIVERY', dispatched_at = NOW() " +
-            "WHERE id = :orderId AND assigned_to = :agentId",
-            nativeQuery = true)
-    int updateStatusToPickedUp(@Param("orderId") Long orderId, @Param("agentId") Long agentId);
-
-    // Mark order as delivered
-    @Modifying
-    @Query(value = "UPDATE orders SET status = 'DELIVERED', delivered_at = NOW() " +
-            "WHERE id = :orderId AND assigned_to = :agentId",
-            nativeQuery = true)
-    int updateStatusToDelivered(@Param("orderId") Long orderId, @Param("agentId") Long agentId);
-
-    // Helper methods
-    default boolean markAsPickedUp(Long orderId, Long agentId) {
-        return updateStatusToPickedUp(orderId, agentId) > 0;
-    }
-
-    default boolean markAsDelivered(Long orderId, Long agentId) {
-        return updateStatusToDelivered(orderId, agentId) > 0;
-    }
 }
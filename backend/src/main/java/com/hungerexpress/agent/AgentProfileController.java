@@ -1,6 +1,7 @@
 package com.hungerexpress.agent;
 
 import com.hungerexpress.common.CurrentUser;
+import com.hungerexpress.tracking.AgentLocationIndex;
 import com.hungerexpress.user.User;
 import com.hungerexpress.user.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +38,9 @@ public class AgentProfileController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private AgentLocationIndex locationIndex;
+
     /**
      * Get complete agent profile (merged from user + agent_profile tables)
      */
@@ -108,6 +112,7 @@ public class AgentProfileController {
         }
 
         userRepository.save(user);
+        locationIndex.rename(user.getId(), user.getFullName());
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -147,6 +152,7 @@ public class AgentProfileController {
         }
 
         agentProfileRepository.save(agentProfile);
+        locationIndex.upsert(agentProfile);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -0,0 +1,13 @@
+package com.hungerexpress.auth;
+
+import java.time.Instant;
+
+/**
+ * Verified access-token claims. Produced by a single signature check in {@link JwtService#parse(String)}.
+ */
+public record JwtClaims(String subject, String role, Long uid, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
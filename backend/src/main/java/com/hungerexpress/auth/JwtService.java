@@ -1,17 +1,19 @@
 package com.hungerexpress.auth;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
@@ -21,6 +23,17 @@ public class JwtService {
     @Value("${app.jwt.ttl-ms:3600000}")
     private long ttlMs;
 
+    // Derived once: the key and parser are immutable and thread-safe
+    private Key signKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init(){
+        byte[] keyBytes = Decoders.BASE64.decode(secret);
+        this.signKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKey(signKey).build();
+    }
+
     public String generate(Map<String, Object> extraClaims, String subject){
         return Jwts.builder()
                 .setClaims(extraClaims)
@@ -28,30 +41,31 @@ public class JwtService {
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + ttlMs))
                 .setHeaderParam("kid", "primary")
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public String extractUsername(String token){
-        return extractClaim(token, Claims::getSubject);
+    /**
+     * Verifies the signature and expiry once and returns every claim the app reads.
+     * Throws a {@link io.jsonwebtoken.JwtException} if the token is invalid.
+     */
+    public JwtClaims parse(String token){
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Number uid = claims.get("uid", Number.class);
+        Date exp = claims.getExpiration();
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                uid != null ? uid.longValue() : null,
+                exp != null ? exp.toInstant() : null);
     }
 
-    public boolean isValid(String token, String username){
-        final String user = extractUsername(token);
-        return (user != null && user.equals(username) && !isExpired(token));
-    }
-
-    private boolean isExpired(String token){
-        return extractClaim(token, Claims::getExpiration).before(new Date());
-    }
-
-    private <T> T extractClaim(String token, Function<Claims, T> resolver){
-        final Claims claims = Jwts.parserBuilder().setSigningKey(getSignKey()).build().parseClaimsJws(token).getBody();
-        return resolver.apply(claims);
+    public String extractUsername(String token){
+        return parse(token).subject();
     }
 
-    private Key getSignKey(){
-        byte[] keyBytes = Decoders.BASE64.decode(secret);
-        return Keys.hmacShaKeyFor(keyBytes);
+    public boolean isValid(String token, String username){
+        JwtClaims claims = parse(token);
+        return claims.subject() != null && claims.subject().equals(username) && !claims.isExpired(Instant.now());
     }
 }
@@ -4,15 +4,16 @@ import com.hungerexpress.common.CurrentUser;
 import com.hungerexpress.dto.CartDTO;
 import com.hungerexpress.dto.CartItemDTO;
 import com.hungerexpress.service.CartService;
-import com.hungerexpress.user.User;
-import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
- * Database-backed Cart Controller
- * Replaces in-memory cart with persistent database storage
+ * Cart API over the in-memory cart engine, which persists to the database in the background.
+ * Guests get a server cart by sending a session id in {@code X-Cart-Session}; without one they
+ * keep using the client-side cart. Item ids are menu item ids.
  */
 @RestController
 @RequestMapping("/api/cart")
@@ -20,30 +21,21 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     private final CartService cartService;
-    private final UserRepository userRepository;
 
     /**
      * Get user's cart with all items
      */
     @GetMapping
-    public ResponseEntity<CartDTO> getCart() {
-        String email = CurrentUser.email();
-        System.out.println("[CartController] GET /api/cart - email: " + email);
-        if (email == null) {
-            // Return empty cart for guest users
-            System.out.println("[CartController] Guest user, returning empty cart");
-            CartDTO emptyCart = new CartDTO(java.util.List.of(), 0, 0.0, 0.0, 0.0, 0.0);
+    public ResponseEntity<CartDTO> getCart(@RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
+            // Guest without a cart session: the client keeps its cart in localStorage
+            CartDTO emptyCart = new CartDTO(java.util.List.of(), 0, 0.0, 0.0, 0.0, 0.0, 0L);
             return ResponseEntity.ok(emptyCart);
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            System.out.println("[CartController] User not found for email: " + email);
-            return ResponseEntity.status(404).build();
-        }
-
-        CartDTO cart = cartService.getCart(user);
-        System.out.println("[CartController] Returning cart with " + cart.getItems().size() + " items");
+        // Served from the in-memory cart; no DB read once the cart is warm
+        CartDTO cart = cartService.getCart(key);
         return ResponseEntity.ok(cart);
     }
 
@@ -51,22 +43,14 @@ public class CartController {
      * Add item to cart (or update quantity if already exists)
      */
     @PostMapping("/add")
-    public ResponseEntity<CartItemDTO> addToCart(@RequestBody AddToCartRequest request) {
-        String email = CurrentUser.email();
-        System.out.println("[CartController] POST /api/cart/add - email: " + email + ", itemId: " + request.menuItemId());
-        if (email == null) {
-            System.out.println("[CartController] Guest user trying to add to cart - returning 401 to use localStorage");
+    public ResponseEntity<CartItemDTO> addToCart(@RequestBody AddToCartRequest request,
+                                                 @RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            System.out.println("[CartController] User not found for email: " + email);
-            return ResponseEntity.status(404).build();
-        }
-
-        CartItemDTO cartItem = cartService.addToCart(user, request.menuItemId(), request.quantity());
-        System.out.println("[CartController] Added item to cart successfully");
+        CartItemDTO cartItem = cartService.addToCart(key, request.menuItemId(), request.quantity());
         return ResponseEntity.ok(cartItem);
     }
 
@@ -76,28 +60,19 @@ public class CartController {
     @PutMapping("/items/{cartItemId}")
     public ResponseEntity<CartItemDTO> updateCartItem(
             @PathVariable Long cartItemId,
-            @RequestBody UpdateCartItemRequest request) {
-        String email = CurrentUser.email();
-        System.out.println("[CartController] PUT /api/cart/items/" + cartItemId + " - email: " + email + ", quantity: " + request.quantity());
-        if (email == null) {
-            System.out.println("[CartController] No user email, returning 401");
+            @RequestBody UpdateCartItemRequest request,
+            @RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            System.out.println("[CartController] User not found for email: " + email);
-            return ResponseEntity.status(404).build();
-        }
-
-        CartItemDTO cartItem = cartService.updateCartItem(user, cartItemId, request.quantity());
+        CartItemDTO cartItem = cartService.updateCartItem(key, cartItemId, request.quantity());
         if (cartItem == null) {
             // Item was removed because quantity was 0
-            System.out.println("[CartController] Item removed (quantity = 0)");
             return ResponseEntity.noContent().build();
         }
         
-        System.out.println("[CartController] Cart item updated successfully");
         return ResponseEntity.ok(cartItem);
     }
 
@@ -105,22 +80,14 @@ public class CartController {
      * Remove item from cart
      */
     @DeleteMapping("/items/{cartItemId}")
-    public ResponseEntity<Void> removeFromCart(@PathVariable Long cartItemId) {
-        String email = CurrentUser.email();
-        System.out.println("[CartController] DELETE /api/cart/items/" + cartItemId + " - email: " + email);
-        if (email == null) {
-            System.out.println("[CartController] No user email, returning 401");
+    public ResponseEntity<Void> removeFromCart(@PathVariable Long cartItemId,
+                                               @RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            System.out.println("[CartController] User not found for email: " + email);
-            return ResponseEntity.status(404).build();
-        }
-
-        cartService.removeFromCart(user, cartItemId);
-        System.out.println("[CartController] Cart item removed successfully");
+        cartService.removeFromCart(key, cartItemId);
         return ResponseEntity.noContent().build();
     }
 
@@ -128,22 +95,13 @@ public class CartController {
      * Clear entire cart
      */
     @DeleteMapping
-    public ResponseEntity<Void> clearCart() {
-        String email = CurrentUser.email();
-        System.out.println("[CartController] DELETE /api/cart - email: " + email);
-        if (email == null) {
-            System.out.println("[CartController] No user email, returning 401");
+    public ResponseEntity<Void> clearCart(@RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
             return ResponseEntity.status(401).build();
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            System.out.println("[CartController] User not found for email: " + email);
-            return ResponseEntity.status(404).build();
-        }
-
-        cartService.clearCart(user);
-        System.out.println("[CartController] Cart cleared successfully");
+        cartService.clearCart(key);
         return ResponseEntity.noContent().build();
     }
 
@@ -151,22 +109,38 @@ public class CartController {
      * Get cart item count (for badge)
      */
     @GetMapping("/count")
-    public ResponseEntity<Long> getCartCount() {
-        String email = CurrentUser.email();
-        if (email == null) {
+    public ResponseEntity<Long> getCartCount(@RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
             return ResponseEntity.ok(0L);
         }
 
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            return ResponseEntity.ok(0L);
+        long count = cartService.getCartItemCount(key);
+        return ResponseEntity.ok(count);
+    }
+
+    /**
+     * Apply several changes at once (e.g. a burst of quantity clicks, or merging a guest's
+     * localStorage cart after login). With a version, fails with 409 and the current cart if the
+     * cart changed since the client last saw it; without one, applies unconditionally.
+     */
+    @PatchMapping
+    public ResponseEntity<CartDTO> patchCart(@RequestBody CartPatchRequest request,
+                                             @RequestHeader(value = CartKey.SESSION_HEADER, required = false) String session) {
+        CartKey key = CartKey.resolve(CurrentUser.id(), session);
+        if (key == null) {
+            return ResponseEntity.status(401).build();
         }
 
-        long count = cartService.getCartItemCount(user);
-        return ResponseEntity.ok(count);
+        CartDTO cart = cartService.patch(key, request.version(), request.ops());
+        if (cart == null) {
+            return ResponseEntity.status(409).body(cartService.getCart(key));
+        }
+        return ResponseEntity.ok(cart);
     }
 
     // DTOs
     public record AddToCartRequest(Long menuItemId, Integer quantity) {}
     public record UpdateCartItemRequest(Integer quantity) {}
+    public record CartPatchRequest(Long version, List<CartService.CartOp> ops) {}
 }
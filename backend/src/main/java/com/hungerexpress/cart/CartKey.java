@@ -0,0 +1,34 @@
+package com.hungerexpress.cart;
+
+import java.util.regex.Pattern;
+
+/**
+ * Whose cart: a signed-in user, or a guest browser session identified by the client-generated
+ * {@code X-Cart-Session} header. Guest carts are memory-only.
+ */
+public record CartKey(Long userId, String guestSession) {
+
+    public static final String SESSION_HEADER = "X-Cart-Session";
+    private static final Pattern SESSION = Pattern.compile("[A-Za-z0-9_-]{16,64}");
+
+    public static CartKey user(Long userId) {
+        return new CartKey(userId, null);
+    }
+
+    /** The signed-in user's cart, else the guest session's, else null when neither is usable. */
+    public static CartKey resolve(Long userId, String guestSession) {
+        if (userId != null) return user(userId);
+        if (guestSession != null && SESSION.matcher(guestSession).matches()) return new CartKey(null, guestSession);
+        return null;
+    }
+
+    public boolean isGuest() {
+        return userId == null;
+    }
+
+    // Keeps guest session ids out of logs
+    @Override
+    public String toString() {
+        return isGuest() ? "guest " + guestSession.substring(0, 6) + "…" : "user " + userId;
+    }
+}
@@ -1,13 +1,258 @@
 package com.hungerexpress.cart;
 
-import org.springframework.stereotype.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hungerexpress.menu.MenuItem;
+import com.hungerexpress.menu.MenuItemRepository;
+import com.hungerexpress.model.Cart;
+import com.hungerexpress.repository.CartRepository;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
-@Service
+/**
+ * The one cart engine: active carts live in bounded in-memory tiers, and every change to a user's
+ * cart is handed to {@link CartWriteBehind}, which persists the newest state to the {@code cart}
+ * table in coalesced batches.
+ * Changes to one cart are serialized by a lock stripe chosen from its {@link CartKey}; readers get
+ * the cart's current immutable {@link Snapshot} without locking. A user cart missing from memory is
+ * rebuilt from a not-yet-flushed snapshot if there is one, otherwise from the table in one query,
+ * so an evicted cart never loses writes. Guest carts live only here, per browser session, and are
+ * gone once evicted.
+ * Both tiers are capped in entries and drop carts idle past their TTL; a cart holds at most
+ * {@code app.cart.max-lines} distinct items. Lines are keyed by menu item id, which is also the
+ * item id clients use to update or remove a line. Lines whose menu item is deleted are dropped from
+ * carts in memory when the restaurant's {@link CatalogChangedEvent} arrives.
+ */
+@Component
 public class CartStore {
-    private final Map<String, List<CartItemDto>> carts = new ConcurrentHashMap<>();
-    public List<CartItemDto> get(String email){ return carts.computeIfAbsent(email, k -> new ArrayList<>()); }
-    public void clear(String email){ get(email).clear(); }
+
+    private static final int STRIPES = 64;
+
+    /** One cart line; {@code price} is the unit price when the item was added. */
+    public record Line(Long menuItemId, String name, Long restaurantId, String restaurantName,
+                       double price, int qty, String imageUrl, Instant addedAt) {
+        public double subtotal() {
+            return price * qty;
+        }
+
+        public Line withQty(int q) {
+            return new Line(menuItemId, name, restaurantId, restaurantName, price, q, imageUrl, addedAt);
+        }
+
+        public static Line of(MenuItem item, int qty) {
+            // Surfaces as a 400; checkout would reject an unpriced item anyway
+            if (item.getPrice() == null) throw new IllegalArgumentException("Menu item not orderable: " + item.getId());
+            return new Line(item.getId(), item.getName(), item.getRestaurant().getId(), item.getRestaurant().getName(),
+                    item.getPrice().doubleValue(), qty, item.getImageUrl(), Instant.now());
+        }
+    }
+
+    /** Immutable state of one cart; lines in the order they were first added. */
+    public record Snapshot(long version, List<Line> lines) {
+        static final Snapshot EMPTY = new Snapshot(0L, List.of());
+
+        public double subtotal() {
+            double s = 0;
+            for (Line l : lines) s += l.subtotal();
+            return s;
+        }
+
+        public boolean isEmpty() {
+            return lines.isEmpty();
+        }
+    }
+
+    private static final class CartState {
+        final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        volatile Snapshot current;
+
+        CartState(Snapshot from) {
+            from.lines().forEach(l -> lines.put(l.menuItemId(), l));
+            current = from;
+        }
+    }
+
+    private final CartRepository repository;
+    private final MenuItemRepository menuItems;
+    private final CartWriteBehind writeBehind;
+    private final Cache<Long, CartState> carts;
+    private final Cache<String, CartState> guests;
+    private final int maxLines;
+    private final Object[] stripes = new Object[STRIPES];
+
+    public CartStore(CartRepository repository, MenuItemRepository menuItems, CartWriteBehind writeBehind, MeterRegistry meters,
+                     @Value("${app.cart.max-carts:50000}") long maxCarts,
+                     @Value("${app.cart.idle-ttl-ms:1800000}") long idleTtlMs,
+                     @Value("${app.cart.max-guest-carts:20000}") long maxGuestCarts,
+                     @Value("${app.cart.guest-idle-ttl-ms:7200000}") long guestIdleTtlMs,
+                     @Value("${app.cart.max-lines:100}") int maxLines) {
+        this.repository = repository;
+        this.menuItems = menuItems;
+        this.writeBehind = writeBehind;
+        this.maxLines = maxLines;
+        // User carts are persisted, so evicting one only costs a reload
+        this.carts = Caffeine.newBuilder().maximumSize(maxCarts)
+                .expireAfterAccess(Duration.ofMillis(idleTtlMs)).recordStats().build();
+        this.guests = Caffeine.newBuilder().maximumSize(maxGuestCarts)
+                .expireAfterAccess(Duration.ofMillis(guestIdleTtlMs)).recordStats().build();
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        CaffeineCacheMetrics.monitor(meters, carts, "cart.users");
+        CaffeineCacheMetrics.monitor(meters, guests, "cart.guests");
+        Gauge.builder("cart.lines", this, CartStore::lineCount)
+                .description("Cart lines held in memory across all carts").register(meters);
+    }
+
+    public Snapshot get(CartKey key) {
+        return state(key).current;
+    }
+
+    /**
+     * Applies {@code change} to the cart's lines under its lock and returns the new snapshot.
+     * The change may add, replace or remove entries; anything it throws leaves the cart as it was.
+     */
+    public Snapshot update(CartKey key, Consumer<Map<Long, Line>> change) {
+        return update(key, null, change);
+    }
+
+    /**
+     * As {@link #update(CartKey, Consumer)}, but only if the cart is still at {@code expectedVersion}
+     * (any version when null). Returns null, changing nothing, on a version mismatch.
+     */
+    public Snapshot update(CartKey key, Long expectedVersion, Consumer<Map<Long, Line>> change) {
+        synchronized (stripe(key)) {
+            CartState s = state(key);
+            if (expectedVersion != null && s.current.version() != expectedVersion) return null;
+            LinkedHashMap<Long, Line> work = new LinkedHashMap<>(s.lines);
+            change.accept(work);
+            if (work.size() > maxLines && work.size() > s.lines.size()) {
+                throw new IllegalArgumentException("A cart can hold at most " + maxLines + " different items");
+            }
+            s.lines.clear();
+            s.lines.putAll(work);
+            return publish(key, s);
+        }
+    }
+
+    public Snapshot clear(CartKey key) {
+        return update(key, Map::clear);
+    }
+
+    /**
+     * Checkout's consume step: empties the cart only if it is still at {@code version}, so lines
+     * added while the order was being placed stay for next time. Returns whether it cleared.
+     */
+    public boolean clearIfVersion(CartKey key, long version) {
+        synchronized (stripe(key)) {
+            CartState s = state(key);
+            if (s.current.version() != version) return false;
+            s.lines.clear();
+            publish(key, s);
+            return true;
+        }
+    }
+
+    /**
+     * Drops lines of the restaurant's items that no longer exist from the carts held in memory, so
+     * they are neither shown nor written back. Rows already in the table go with the item (cascade).
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent e) {
+        if (!e.menuChanged() || e.restaurantId() == null) return;
+        Long rid = e.restaurantId();
+        List<CartKey> affected = new ArrayList<>();
+        carts.asMap().forEach((uid, s) -> { if (holds(s.current, rid)) affected.add(CartKey.user(uid)); });
+        guests.asMap().forEach((sid, s) -> { if (holds(s.current, rid)) affected.add(new CartKey(null, sid)); });
+        if (affected.isEmpty()) return;
+
+        Set<Long> live = new HashSet<>(menuItems.findIdsByRestaurantId(rid));
+        for (CartKey key : affected) {
+            synchronized (stripe(key)) {
+                // Only carts still in memory; an evicted one reloads from the table without the item
+                CartState s = key.isGuest() ? guests.getIfPresent(key.guestSession()) : carts.getIfPresent(key.userId());
+                if (s != null && s.lines.values().removeIf(l -> rid.equals(l.restaurantId()) && !live.contains(l.menuItemId()))) {
+                    publish(key, s);
+                }
+            }
+        }
+    }
+
+    private static boolean holds(Snapshot cart, Long restaurantId) {
+        for (Line l : cart.lines()) if (restaurantId.equals(l.restaurantId())) return true;
+        return false;
+    }
+
+    public long size() {
+        return carts.estimatedSize() + guests.estimatedSize();
+    }
+
+    private long lineCount() {
+        long n = 0;
+        for (CartState s : carts.asMap().values()) n += s.current.lines().size();
+        for (CartState s : guests.asMap().values()) n += s.current.lines().size();
+        return n;
+    }
+
+    // Caller holds the stripe lock
+    private Snapshot publish(CartKey key, CartState s) {
+        Snapshot next = new Snapshot(s.current.version() + 1, Collections.unmodifiableList(new ArrayList<>(s.lines.values())));
+        s.current = next;
+        // Re-attach in case the entry was evicted while we held it, so readers never see an older copy
+        if (key.isGuest()) {
+            guests.put(key.guestSession(), s);
+        } else {
+            carts.put(key.userId(), s);
+            writeBehind.enqueue(key.userId(), next);
+        }
+        return next;
+    }
+
+    // Loaded outside the cache's compute so a slow query never blocks other carts
+    private CartState state(CartKey key) {
+        if (key.isGuest()) return guests.get(key.guestSession(), k -> new CartState(Snapshot.EMPTY));
+        CartState s = carts.getIfPresent(key.userId());
+        if (s != null) return s;
+        CartState loaded = load(key.userId());
+        s = carts.asMap().putIfAbsent(key.userId(), loaded);
+        return s != null ? s : loaded;
+    }
+
+    private CartState load(Long userId) {
+        Snapshot unflushed = writeBehind.latest(userId);
+        if (unflushed != null) return new CartState(unflushed);
+        Map<Long, Line> lines = new LinkedHashMap<>();
+        long version = 0L;
+        for (Cart c : repository.findByUserIdWithMenuItem(userId)) {
+            MenuItem m = c.getMenuItem();
+            if (c.getUpdatedAt() != null) {
+                version = Math.max(version, c.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            Instant added = c.getCreatedAt() != null ? c.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant() : Instant.now();
+            // Older rows may repeat an item; fold them into one line
+            lines.merge(m.getId(), new Line(m.getId(), m.getName(), m.getRestaurant().getId(), m.getRestaurant().getName(),
+                    c.getPrice(), c.getQuantity(), m.getImageUrl(), added), (a, b) -> a.withQty(a.qty() + b.qty()));
+        }
+        // Seeded from the last write time so a reloaded cart doesn't reuse versions clients have already seen
+        return new CartState(lines.isEmpty() ? Snapshot.EMPTY : new Snapshot(version, List.copyOf(lines.values())));
+    }
+
+    private Object stripe(CartKey key) {
+        return stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+    }
 }
@@ -0,0 +1,139 @@
+package com.hungerexpress.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists {@link CartStore} changes to the {@code cart} table off the request path.
+ * Only the newest snapshot per user is kept between flushes; each flush replaces the drained
+ * users' rows in one transaction, with one batched DELETE and one batched INSERT. A snapshot
+ * stays readable through {@link #latest} until its flush has committed, so a cart reloaded in
+ * the meantime still sees it.
+ * Lines whose menu item has since been deleted are skipped by the INSERT rather than failing it.
+ * If a batch fails anyway, its carts are retried one per transaction, so one bad cart can't keep
+ * the others from being written.
+ */
+@Component
+@Slf4j
+public class CartWriteBehind {
+
+    private static final String DELETE_SQL = "DELETE FROM cart WHERE user_id = ?";
+    // Selects nothing, so inserts nothing, once the menu item is gone
+    private static final String INSERT_SQL =
+            "INSERT INTO cart (user_id, menu_item_id, quantity, price, created_at, updated_at)"
+                    + " SELECT ?, id, ?, ?, ?, ? FROM menu_item WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Map<Long, CartStore.Snapshot> pending = new ConcurrentHashMap<>();
+    private final Map<Long, CartStore.Snapshot> inFlight = new ConcurrentHashMap<>();
+    private final Counter written;
+    private final Counter failed;
+
+    public CartWriteBehind(JdbcTemplate jdbc, PlatformTransactionManager txManager, MeterRegistry meters,
+                           @Value("${app.cart.write-behind.batch-size:200}") int batchSize) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = Math.max(1, batchSize);
+        Gauge.builder("cart.write_behind.pending", pending, Map::size).description("Carts waiting to be persisted").register(meters);
+        this.written = Counter.builder("cart.write_behind.flushed").description("Carts persisted").register(meters);
+        this.failed = Counter.builder("cart.write_behind.failures").description("Failed cart flush batches").register(meters);
+    }
+
+    void enqueue(Long userId, CartStore.Snapshot snapshot) {
+        pending.put(userId, snapshot);
+    }
+
+    /** Newest snapshot not yet committed to the table, or null. */
+    CartStore.Snapshot latest(Long userId) {
+        CartStore.Snapshot s = pending.get(userId);
+        return s != null ? s : inFlight.get(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-ms:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    public synchronized int flush() {
+        int total = 0;
+        List<Map.Entry<Long, CartStore.Snapshot>> batch = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            CartStore.Snapshot s = pending.get(userId);
+            if (s == null) continue;
+            // Visible in inFlight before it leaves pending, so latest() never returns null in between
+            inFlight.put(userId, s);
+            if (!pending.remove(userId, s)) {
+                // Replaced meanwhile; the newer snapshot is written instead
+                inFlight.remove(userId, s);
+                continue;
+            }
+            batch.add(Map.entry(userId, s));
+            if (batch.size() >= batchSize) {
+                total += write(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) total += write(batch);
+        return total;
+    }
+
+    private int write(List<Map.Entry<Long, CartStore.Snapshot>> batch) {
+        try {
+            replace(batch);
+            written.increment(batch.size());
+            return batch.size();
+        } catch (Exception ex) {
+            failed.increment();
+            if (batch.size() == 1) {
+                log.error("Failed to persist cart of user {}: {}", batch.get(0).getKey(), ex.getMessage(), ex);
+                // Retry next run unless a newer snapshot already replaced it
+                pending.putIfAbsent(batch.get(0).getKey(), batch.get(0).getValue());
+                return 0;
+            }
+            log.warn("Failed to persist {} carts together, retrying one by one: {}", batch.size(), ex.getMessage());
+            int n = 0;
+            for (Map.Entry<Long, CartStore.Snapshot> e : batch) n += write(List.of(e));
+            return n;
+        } finally {
+            for (Map.Entry<Long, CartStore.Snapshot> e : batch) inFlight.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private void replace(List<Map.Entry<Long, CartStore.Snapshot>> batch) {
+        tx.executeWithoutResult(status -> {
+            jdbc.batchUpdate(DELETE_SQL, batch, batch.size(), (ps, e) -> ps.setLong(1, e.getKey()));
+            List<Object[]> rows = new ArrayList<>();
+            Timestamp now = Timestamp.from(Instant.now());
+            for (Map.Entry<Long, CartStore.Snapshot> e : batch) {
+                for (CartStore.Line l : e.getValue().lines()) {
+                    rows.add(new Object[]{e.getKey(), l.qty(), l.price(), Timestamp.from(l.addedAt()), now, l.menuItemId()});
+                }
+            }
+            if (!rows.isEmpty()) jdbc.batchUpdate(INSERT_SQL, rows);
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int n = flush();
+        log.info("Persisted {} pending carts on shutdown ({} left)", n, pending.size());
+    }
+}
@@ -0,0 +1,20 @@
+package com.hungerexpress.common;
+
+import java.security.Principal;
+
+/**
+ * Security principal built from a verified access token. Carries the user id from the
+ * {@code uid} claim so callers can resolve themselves without a users-table lookup.
+ */
+public record AuthUser(Long id, String email, String role) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String toString() {
+        return email;
+    }
+}
@@ -9,4 +9,17 @@ public final class CurrentUser {
         Authentication a = SecurityContextHolder.getContext().getAuthentication();
         return a != null ? String.valueOf(a.getPrincipal()) : null;
     }
+    /** User id from the token's {@code uid} claim, or null for guests and tokens without one. */
+    public static Long id(){
+        AuthUser u = principal();
+        return u != null ? u.id() : null;
+    }
+    public static String role(){
+        AuthUser u = principal();
+        return u != null ? u.role() : null;
+    }
+    public static AuthUser principal(){
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        return a != null && a.getPrincipal() instanceof AuthUser u ? u : null;
+    }
 }
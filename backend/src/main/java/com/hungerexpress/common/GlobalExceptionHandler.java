@@ -1,7 +1,11 @@
 package com.hungerexpress.common;
 
+import com.hungerexpress.orders.BasketRejectedException;
+import com.hungerexpress.orders.OrderConflictException;
+import com.hungerexpress.orders.OrderSummaryDto;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -30,6 +34,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    /** Stale or tampered checkout basket; same shape as {@link ApiError} plus the offending items. */
+    public record BasketError(Instant timestamp, int status, String error, String message, String path,
+                              List<BasketRejectedException.Problem> items) {}
+
+    @ExceptionHandler(BasketRejectedException.class)
+    public ResponseEntity<BasketError> handleBasketRejected(BasketRejectedException ex, ServletWebRequest req){
+        BasketError body = new BasketError(Instant.now(), HttpStatus.CONFLICT.value(), "Conflict",
+                ex.getMessage(), req.getRequest().getRequestURI(), ex.getProblems());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
+    /** Lost order status change; same shape as {@link ApiError} plus the order as it is now. */
+    public record OrderConflict(Instant timestamp, int status, String error, String message, String path,
+                                OrderSummaryDto order) {}
+
+    @ExceptionHandler(OrderConflictException.class)
+    public ResponseEntity<OrderConflict> handleOrderConflict(OrderConflictException ex, ServletWebRequest req){
+        OrderConflict body = new OrderConflict(Instant.now(), HttpStatus.CONFLICT.value(), "Conflict",
+                ex.getMessage(), req.getRequest().getRequestURI(), ex.getCurrent());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
+    // An entity saved over a newer version (e.g. an order changed since it was read)
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ApiError> handleStaleWrite(ObjectOptimisticLockingFailureException ex, ServletWebRequest req){
+        ApiError body = new ApiError(Instant.now(), HttpStatus.CONFLICT.value(), "Conflict",
+                "Changed by someone else; reload and retry", req.getRequest().getRequestURI(), List.of());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+
     private ApiError.FieldViolation toViolation(FieldError fe){
         return new ApiError.FieldViolation(fe.getField(), fe.getDefaultMessage());
     }
@@ -83,7 +83,8 @@ public class SecurityConfig {
             "https://hungerexpress-online-food-delivery-ap.netlify.app"
         ));
         configuration.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With"));
+        configuration.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With", "If-None-Match", "Last-Event-ID", "X-Cart-Session", "Idempotency-Key"));
+        configuration.setExposedHeaders(List.of("X-Next-Cursor", "ETag", "Idempotent-Replayed"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
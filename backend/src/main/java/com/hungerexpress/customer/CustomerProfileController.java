@@ -2,6 +2,7 @@ package com.hungerexpress.customer;
 
 import com.hungerexpress.common.CurrentUser;
 import com.hungerexpress.orders.OrderEntity;
+import com.hungerexpress.orders.OrderPageQuery;
 import com.hungerexpress.orders.OrderRepository;
 import com.hungerexpress.orders.OrderStatus;
 import com.hungerexpress.user.User;
@@ -26,6 +27,7 @@ public class CustomerProfileController {
     private final UserRepository users;
     private final OrderRepository orders;
     private final PasswordEncoder passwordEncoder;
+    private final OrderPageQuery pages;
 
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
 
@@ -99,16 +101,14 @@ public class CustomerProfileController {
     // Get order history
     @GetMapping("/orders")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<List<OrderHistoryDto>> getOrderHistory() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
-
-        User user = users.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
+    public ResponseEntity<List<OrderHistoryDto>> getOrderHistory(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit) {
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
 
-        List<OrderEntity> userOrders = orders.findByUserIdOrderByCreatedAtDesc(user.getId());
+        OrderPageQuery.Page page = pages.fetch(OrderPageQuery.Filter.builder().userId(userId).build(), cursor, limit);
 
-        List<OrderHistoryDto> history = userOrders.stream()
+        List<OrderHistoryDto> history = page.orders().stream()
                 .map(order -> OrderHistoryDto.builder()
                         .orderId(order.getId())
                         .restaurantId(order.getRestaurantId())
@@ -129,7 +129,7 @@ public class CustomerProfileController {
                         .build())
                 .collect(Collectors.toList());
 
-        return ResponseEntity.ok(history);
+        return OrderPageQuery.ok(page).body(history);
     }
 
     // Get order tracking details
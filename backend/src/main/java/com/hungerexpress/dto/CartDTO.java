@@ -18,4 +18,5 @@ public class CartDTO {
     private Double deliveryFee;   // INR
     private Double tax;           // INR (GST)
     private Double total;         // INR
+    private Long version;         // changes on every cart mutation; send back on PATCH /api/cart
 }
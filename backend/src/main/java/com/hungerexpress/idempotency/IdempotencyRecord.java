@@ -0,0 +1,49 @@
+package com.hungerexpress.idempotency;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Durable copy of one idempotent request: claimed (no status yet) while the first request runs,
+ * then holding its response until {@code expiresAt}. Lets a retry that lands on another instance,
+ * or after a restart, replay instead of re-executing.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = {
+        @Index(name = "uk_idempotency_scope_key", columnList = "scope, idem_key", unique = true),
+        @Index(name = "idx_idempotency_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 60)
+    private String scope;
+
+    @Column(name = "idem_key", nullable = false, length = 100)
+    private String idemKey;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    // Null while the first request is still running
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
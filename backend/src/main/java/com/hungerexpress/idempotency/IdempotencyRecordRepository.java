@@ -0,0 +1,37 @@
+package com.hungerexpress.idempotency;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    Optional<IdempotencyRecord> findByScopeAndIdemKey(String scope, String idemKey);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :status, r.responseBody = :body " +
+           "WHERE r.scope = :scope AND r.idemKey = :key")
+    int complete(@Param("scope") String scope, @Param("key") String key,
+                 @Param("status") int status, @Param("body") String body);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.scope = :scope AND r.idemKey = :key")
+    int release(@Param("scope") String scope, @Param("key") String key);
+
+    // Only removes the row it was shown, so a claim made in between by someone else survives
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id")
+    int deleteRecord(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
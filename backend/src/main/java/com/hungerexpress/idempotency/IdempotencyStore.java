@@ -0,0 +1,263 @@
+package com.hungerexpress.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a request at most once per client {@code Idempotency-Key} and replays its response to
+ * retries until the key expires.
+ * Within an instance, the first request publishes a future that concurrent duplicates wait on, and
+ * the finished response stays in a bounded in-memory table. Across instances and restarts the key is
+ * claimed by inserting its {@link IdempotencyRecord} row (unique per scope and key), and the response
+ * is stored there for whoever misses memory.
+ * Responses below 500 are kept, errors included, so a retry sees what the first attempt saw. A 5xx or
+ * an exception releases the key so the retry runs again. Reusing a key for a different request body
+ * is rejected with 422.
+ * Keys are scoped per caller ({@link #scope}): a user's own, or a guest's cart session's, so nobody
+ * can replay another caller's response by reusing their key.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9_:.-]{8,100}");
+    private static final long POLL_MS = 100;
+
+    /** A finished response: the request it answered and the JSON body. */
+    private record Stored(String requestHash, int status, String body) {}
+
+    private final IdempotencyRecordRepository records;
+    private final ObjectMapper json;
+    private final Cache<String, CompletableFuture<Stored>> recent;
+    private final Duration ttl;
+    private final long waitMs;
+    private final Duration pendingTimeout;
+    private final Counter replayed;
+    private final Counter conflicts;
+
+    public IdempotencyStore(IdempotencyRecordRepository records, ObjectMapper json, MeterRegistry meters,
+                            @Value("${app.idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${app.idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${app.idempotency.wait-ms:10000}") long waitMs,
+                            @Value("${app.idempotency.pending-timeout-ms:60000}") long pendingTimeoutMs) {
+        this.records = records;
+        this.json = json;
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.waitMs = waitMs;
+        this.pendingTimeout = Duration.ofMillis(pendingTimeoutMs);
+        this.recent = Caffeine.newBuilder().maximumSize(maxKeys).expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meters, recent, "idempotency.keys");
+        this.replayed = Counter.builder("idempotency.replayed").description("Retries answered with a stored response").register(meters);
+        this.conflicts = Counter.builder("idempotency.conflicts").description("Retries given up on while the first request was still running").register(meters);
+    }
+
+    /**
+     * The scope of {@code operation} keys sent by a user, or by a guest with a cart session (hashed,
+     * as it identifies the guest's cart). Null for a guest without one, who can't use keys.
+     */
+    public static String scope(String operation, Long userId, String guestSession) {
+        if (userId != null) return operation + ":" + userId;
+        if (guestSession == null) return null;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(guestSession.getBytes(StandardCharsets.UTF_8));
+            return operation + ":guest:" + HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Runs {@code work} unless {@code key} was already used in {@code scope}, in which case the first
+     * response is returned (waiting for it if that request is still running). Without a key this just
+     * runs {@code work}. {@code request} identifies the payload the key may be used with; a null
+     * {@code scope} (see {@link #scope}) refuses keys.
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, Class<T> type,
+                                         Supplier<ResponseEntity<T>> work) {
+        if (key == null || key.isBlank()) return work.get();
+        if (!KEY.matcher(key).matches()) throw new IllegalArgumentException("Invalid " + HEADER + " header");
+        if (scope == null) throw new IllegalArgumentException(HEADER + " needs a signed-in user or a cart session");
+        String hash = hash(request);
+        String id = scope + "|" + key;
+
+        // A failed first attempt releases the key, and a waiter then takes it over
+        for (int attempt = 0; attempt < 3; attempt++) {
+            CompletableFuture<Stored> mine = new CompletableFuture<>();
+            CompletableFuture<Stored> theirs = recent.asMap().putIfAbsent(id, mine);
+            if (theirs != null) {
+                Stored s = await(theirs, scope, key);
+                if (s != null) return replay(s, hash, type);
+                recent.asMap().remove(id, theirs);
+                continue;
+            }
+
+            Stored earlier;
+            try {
+                earlier = claim(scope, key, hash);
+            } catch (RuntimeException ex) {
+                abandon(id, mine);
+                throw ex;
+            }
+            if (earlier != null) {
+                mine.complete(earlier);
+                return replay(earlier, hash, type);
+            }
+
+            ResponseEntity<T> res;
+            try {
+                res = work.get();
+            } catch (RuntimeException ex) {
+                release(scope, key);
+                abandon(id, mine);
+                throw ex;
+            }
+            if (res.getStatusCode().is5xxServerError()) {
+                release(scope, key);
+                abandon(id, mine);
+                return res;
+            }
+            Stored done = new Stored(hash, res.getStatusCode().value(), write(res.getBody()));
+            try {
+                records.complete(scope, key, done.status(), done.body());
+            } catch (RuntimeException ex) {
+                // Still replayed from memory; only other instances would miss it
+                log.error("Failed to store idempotent response for key {} in {}: {}", key, scope, ex.getMessage());
+            }
+            mine.complete(done);
+            return res;
+        }
+        throw busy(scope, key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-ms:3600000}")
+    public void purgeExpired() {
+        int n = records.deleteExpired(Instant.now());
+        if (n > 0) log.info("Purged {} expired idempotency keys", n);
+    }
+
+    /**
+     * Claims the key in the table, returning null once claimed, or the stored response if the key
+     * was already used. Waits while another instance is still running it; takes over claims that
+     * expired or were left unfinished for longer than the pending timeout.
+     */
+    private Stored claim(String scope, String key, String hash) {
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (true) {
+            Instant now = Instant.now();
+            try {
+                records.saveAndFlush(IdempotencyRecord.builder()
+                        .scope(scope).idemKey(key).requestHash(hash)
+                        .createdAt(now).expiresAt(now.plus(ttl))
+                        .build());
+                return null;
+            } catch (DataIntegrityViolationException taken) {
+                IdempotencyRecord r = records.findByScopeAndIdemKey(scope, key).orElse(null);
+                if (r == null) continue;
+                if (r.getExpiresAt().isBefore(now)
+                        || (r.getStatusCode() == null && r.getCreatedAt().plus(pendingTimeout).isBefore(now))) {
+                    records.deleteRecord(r.getId());
+                    continue;
+                }
+                if (r.getStatusCode() != null) return new Stored(r.getRequestHash(), r.getStatusCode(), r.getResponseBody());
+            }
+            if (System.currentTimeMillis() >= deadline) throw busy(scope, key);
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw busy(scope, key);
+            }
+        }
+    }
+
+    // Null when the first request failed and released the key
+    private Stored await(CompletableFuture<Stored> first, String scope, String key) {
+        try {
+            return first.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            throw busy(scope, key);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw busy(scope, key);
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(Stored s, String hash, Class<T> type) {
+        if (!s.requestHash().equals(hash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, HEADER + " was already used for a different request");
+        }
+        replayed.increment();
+        try {
+            T body = s.body() == null ? null : json.readValue(s.body(), type);
+            return ResponseEntity.status(s.status()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unreadable stored response", ex);
+        }
+    }
+
+    private void release(String scope, String key) {
+        try {
+            records.release(scope, key);
+        } catch (RuntimeException ex) {
+            // The claim then lapses after the pending timeout
+            log.error("Failed to release idempotency key {} in {}: {}", key, scope, ex.getMessage());
+        }
+    }
+
+    // Wakes waiters with null so one of them runs the request again
+    private void abandon(String id, CompletableFuture<Stored> mine) {
+        recent.asMap().remove(id, mine);
+        mine.complete(null);
+    }
+
+    private ResponseStatusException busy(String scope, String key) {
+        conflicts.increment();
+        log.warn("Idempotency key {} in {} still in progress", key, scope);
+        return new ResponseStatusException(HttpStatus.CONFLICT, "A request with this " + HEADER + " is still in progress");
+    }
+
+    private String write(Object body) {
+        try {
+            return body == null ? null : json.writeValueAsString(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Response not serializable", ex);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(json.writeValueAsBytes(request)));
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot fingerprint request", ex);
+        }
+    }
+}
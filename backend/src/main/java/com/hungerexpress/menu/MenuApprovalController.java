@@ -1,8 +1,10 @@
 package com.hungerexpress.menu;
 
 import com.hungerexpress.common.CurrentUser;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
 import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +24,7 @@ public class MenuApprovalController {
     private final MenuItemRepository menuItems;
     private final UserRepository users;
     private final MenuCategoryRepository categories;
+    private final ApplicationEventPublisher events;
     
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
 
@@ -126,6 +129,7 @@ public class MenuApprovalController {
         item.setRejectionReason(null);
         
         MenuItem saved = menuItems.save(item);
+        events.publishEvent(CatalogChangedEvent.menu(saved.getRestaurant().getId()));
         return ResponseEntity.ok(toDto(saved));
     }
 
@@ -150,12 +154,16 @@ public class MenuApprovalController {
         item.setRejectionReason(request.reason());
         
         MenuItem saved = menuItems.save(item);
+        events.publishEvent(CatalogChangedEvent.menu(saved.getRestaurant().getId()));
         return ResponseEntity.ok(toDto(saved));
     }
 
     @DeleteMapping("/{itemId}")
     public ResponseEntity<Void> deleteItem(@PathVariable Long itemId) {
-        menuItems.deleteById(itemId);
+        menuItems.findById(itemId).ifPresent(item -> {
+            menuItems.delete(item);
+            events.publishEvent(CatalogChangedEvent.menu(item.getRestaurant().getId()));
+        });
         return ResponseEntity.noContent().build();
     }
 
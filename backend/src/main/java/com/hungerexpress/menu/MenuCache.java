@@ -0,0 +1,52 @@
+package com.hungerexpress.menu;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of each restaurant's public menu, held as the already-rendered JSON body
+ * together with its ETag, so a hit is served without any object mapping.
+ * Entries are dropped per restaurant when its menu changes; the TTL only bounds staleness
+ * from writes that bypass events.
+ */
+@Component
+public class MenuCache {
+
+    /** The customer-visible menu of one restaurant as JSON, and a strong validator derived from it. Never mutate {@code json}. */
+    public record Snapshot(byte[] json, String etag) {}
+
+    private final Cache<Long, Snapshot> cache;
+
+    public MenuCache(MeterRegistry meters,
+                     @Value("${app.catalog.cache.menu-max-size:2000}") long maxSize,
+                     @Value("${app.catalog.cache.ttl-ms:600000}") long ttlMs) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meters, cache, "restaurant.menu");
+    }
+
+    public Snapshot get(Long restaurantId, Function<Long, Snapshot> loader) {
+        return cache.get(restaurantId, loader);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent e) {
+        if (e.menuChanged()) cache.invalidate(e.restaurantId());
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -2,9 +2,18 @@ package com.hungerexpress.menu;
 
 import com.hungerexpress.restaurant.Restaurant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface MenuCategoryRepository extends JpaRepository<MenuCategory, Long> {
     List<MenuCategory> findByRestaurantOrderByPositionAsc(Restaurant restaurant);
+
+    // Whole public menu in one round trip: (category, item-or-null) rows in display order.
+    // The restaurant is fetch-joined so the items' eager references resolve from the same session.
+    @Query("SELECT c, i FROM MenuCategory c JOIN FETCH c.restaurant " +
+           "LEFT JOIN MenuItem i ON i.category = c AND i.approvalStatus = :status " +
+           "WHERE c.restaurant.id = :restaurantId ORDER BY c.position ASC, c.id ASC, i.id ASC")
+    List<Object[]> findMenuRows(@Param("restaurantId") Long restaurantId, @Param("status") MenuItem.ApprovalStatus status);
 }
@@ -1,13 +1,16 @@
 package com.hungerexpress.menu;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/restaurants/{id}/menu")
 @RequiredArgsConstructor
@@ -15,7 +18,24 @@ public class MenuController {
     private final MenuService menu;
 
     @GetMapping
-    public List<MenuCategory> get(@PathVariable("id") Long restaurantId){
-        return menu.categoriesWithItems(restaurantId);
+    public ResponseEntity<byte[]> get(@PathVariable("id") Long restaurantId,
+                                      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch){
+        MenuCache.Snapshot snap = menu.snapshot(restaurantId);
+        // Clients must revalidate, but an unchanged menu costs them only a 304
+        if (matches(ifNoneMatch, snap.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snap.etag()).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(snap.etag()).cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON).body(snap.json());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag){
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals("*") || c.equals(etag)) return true;
+        }
+        return false;
     }
 }
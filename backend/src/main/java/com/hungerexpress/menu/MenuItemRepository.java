@@ -1,7 +1,10 @@
 package com.hungerexpress.menu;
 
 import com.hungerexpress.restaurant.Restaurant;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -14,4 +17,25 @@ public interface MenuItemRepository extends JpaRepository<MenuItem, Long> {
     List<MenuItem> findByRestaurantAndApprovalStatus(Restaurant restaurant, MenuItem.ApprovalStatus status);
     List<MenuItem> findByCategoryIdAndApprovalStatusOrderByIdAsc(Long categoryId, MenuItem.ApprovalStatus status);
     long countByApprovalStatus(MenuItem.ApprovalStatus status);
+    
+    // Projection for the search index build: id, restaurantId, name of approved items, id-ordered chunks
+    @Query("SELECT i.id, i.restaurant.id, i.name FROM MenuItem i " +
+           "WHERE i.approvalStatus = com.hungerexpress.menu.MenuItem.ApprovalStatus.APPROVED AND i.id > :afterId ORDER BY i.id ASC")
+    List<Object[]> findApprovedNamesAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT i.name FROM MenuItem i " +
+           "WHERE i.restaurant.id = :restaurantId AND i.approvalStatus = com.hungerexpress.menu.MenuItem.ApprovalStatus.APPROVED")
+    List<String> findApprovedNamesByRestaurantId(@Param("restaurantId") Long restaurantId);
+
+    // Projections for the checkout price table: id, restaurantId, name, price, approvalStatus, available
+    @Query("SELECT i.id, i.restaurant.id, i.name, i.price, i.approvalStatus, i.available FROM MenuItem i " +
+           "WHERE i.id > :afterId ORDER BY i.id ASC")
+    List<Object[]> findPriceRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT i.id, i.restaurant.id, i.name, i.price, i.approvalStatus, i.available FROM MenuItem i " +
+           "WHERE i.restaurant.id = :restaurantId ORDER BY i.id ASC")
+    List<Object[]> findPriceRowsByRestaurantId(@Param("restaurantId") Long restaurantId);
+
+    @Query("SELECT i.id FROM MenuItem i WHERE i.restaurant.id = :restaurantId")
+    List<Long> findIdsByRestaurantId(@Param("restaurantId") Long restaurantId);
 }
@@ -0,0 +1,173 @@
+package com.hungerexpress.menu;
+
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What checkout needs to know about every menu item (price in paise, restaurant, name, approval and
+ * availability), held in id-sorted primitive columns so a basket is validated with a few binary
+ * searches and no queries.
+ * The columns are immutable and swapped whole: built in id-ordered chunks at startup, and merged with
+ * a restaurant's fresh rows whenever {@link CatalogChangedEvent} reports its menu changed.
+ */
+@Component
+@Slf4j
+public class MenuPriceTable {
+
+    private static final int BUILD_CHUNK = 5000;
+    private static final byte APPROVED = 1;
+    private static final byte AVAILABLE = 2;
+
+    /** One item as checkout sees it. */
+    public record Entry(long menuItemId, long restaurantId, String name, long priceCents, boolean approved, boolean available) {
+        public BigDecimal price() {
+            return BigDecimal.valueOf(priceCents, 2);
+        }
+
+        public boolean orderable() {
+            return approved && available;
+        }
+    }
+
+    private static final class Columns {
+        static final Columns EMPTY = new Columns(0);
+
+        final long[] ids;
+        final long[] restaurants;
+        final long[] cents;
+        final byte[] flags;
+        final String[] names;
+        int size;
+
+        Columns(int capacity) {
+            ids = new long[capacity];
+            restaurants = new long[capacity];
+            cents = new long[capacity];
+            flags = new byte[capacity];
+            names = new String[capacity];
+        }
+
+        void add(long id, long restaurant, long price, byte flag, String name) {
+            ids[size] = id;
+            restaurants[size] = restaurant;
+            cents[size] = price;
+            flags[size] = flag;
+            names[size] = name;
+            size++;
+        }
+
+        void addFrom(Columns o, int i) {
+            add(o.ids[i], o.restaurants[i], o.cents[i], o.flags[i], o.names[i]);
+        }
+
+        Columns trimmed() {
+            if (size == ids.length) return this;
+            Columns c = new Columns(size);
+            for (int i = 0; i < size; i++) c.addFrom(this, i);
+            return c;
+        }
+    }
+
+    private final MenuItemRepository items;
+    private volatile Columns table = Columns.EMPTY;
+    private volatile boolean ready = false;
+
+    public MenuPriceTable(MenuItemRepository items, MeterRegistry meters) {
+        this.items = items;
+        Gauge.builder("menu.price_table.items", this, t -> t.table.size)
+                .description("Menu items in the checkout price table").register(meters);
+    }
+
+    /** The item's checkout entry, or null if no such item exists. */
+    public Entry get(long menuItemId) {
+        Columns c = columns();
+        int i = Arrays.binarySearch(c.ids, 0, c.size, menuItemId);
+        if (i < 0) return null;
+        return new Entry(c.ids[i], c.restaurants[i], c.names[i], c.cents[i],
+                (c.flags[i] & APPROVED) != 0, (c.flags[i] & AVAILABLE) != 0);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        if (ready) return;
+        Columns c = new Columns(BUILD_CHUNK);
+        long afterId = 0L;
+        while (true) {
+            List<Object[]> rows = items.findPriceRowsAfter(afterId, PageRequest.of(0, BUILD_CHUNK));
+            if (rows.isEmpty()) break;
+            if (c.size + rows.size() > c.ids.length) c = grow(c, Math.max(c.ids.length * 2, c.size + rows.size()));
+            for (Object[] r : rows) add(c, r);
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        table = c.trimmed();
+        ready = true;
+        log.info("Menu price table built with {} items", table.size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent e) {
+        if (!e.menuChanged() || e.restaurantId() == null) return;
+        try {
+            reload(e.restaurantId());
+        } catch (Exception ex) {
+            log.error("Failed to refresh menu prices of restaurant {}: {}", e.restaurantId(), ex.getMessage(), ex);
+        }
+    }
+
+    /** Replaces the restaurant's rows with its current items, in one merge pass. */
+    public synchronized void reload(long restaurantId) {
+        // Before the build, which will read the change itself; after it, queued behind it on this lock
+        if (!ready) return;
+        List<Object[]> rows = items.findPriceRowsByRestaurantId(restaurantId);
+        Columns fresh = new Columns(rows.size());
+        for (Object[] r : rows) add(fresh, r);
+
+        Columns old = table;
+        Columns next = new Columns(old.size + fresh.size);
+        int i = 0, j = 0;
+        while (i < old.size || j < fresh.size) {
+            if (i < old.size && old.restaurants[i] == restaurantId) { i++; continue; }
+            if (j >= fresh.size || (i < old.size && old.ids[i] < fresh.ids[j])) next.addFrom(old, i++);
+            else if (i < old.size && old.ids[i] == fresh.ids[j]) { next.addFrom(fresh, j++); i++; } // moved between restaurants
+            else next.addFrom(fresh, j++);
+        }
+        table = next.trimmed();
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    // A checkout arriving before startup finished builds the table itself
+    private Columns columns() {
+        if (!ready) build();
+        return table;
+    }
+
+    private static void add(Columns c, Object[] r) {
+        BigDecimal price = (BigDecimal) r[3];
+        // An item without a price can't be ordered; left out, checkout rejects it as not found
+        if (price == null) return;
+        byte flags = 0;
+        if (r[4] == MenuItem.ApprovalStatus.APPROVED) flags |= APPROVED;
+        if (!Boolean.FALSE.equals(r[5])) flags |= AVAILABLE;
+        c.add((Long) r[0], (Long) r[1], price.movePointRight(2).longValue(), flags, (String) r[2]);
+    }
+
+    private static Columns grow(Columns c, int capacity) {
+        Columns g = new Columns(capacity);
+        for (int i = 0; i < c.size; i++) g.addFrom(c, i);
+        return g;
+    }
+}
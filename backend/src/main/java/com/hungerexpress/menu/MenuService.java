@@ -1,24 +1,64 @@
 package com.hungerexpress.menu;
 
-import com.hungerexpress.restaurant.Restaurant;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hungerexpress.restaurant.RestaurantRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @Service
 @RequiredArgsConstructor
 public class MenuService {
     private final RestaurantRepository restaurants;
     private final MenuCategoryRepository categories;
-    private final MenuItemRepository items;
+    private final MenuCache cache;
+    private final ObjectMapper json;
 
     public List<MenuCategory> categoriesWithItems(Long restaurantId){
-        Restaurant r = restaurants.findById(restaurantId).orElseThrow();
-        List<MenuCategory> cats = categories.findByRestaurantOrderByPositionAsc(r);
         // Only show APPROVED items to customers
-        cats.forEach(c -> c.setItems(items.findByCategoryIdAndApprovalStatusOrderByIdAsc(c.getId(), MenuItem.ApprovalStatus.APPROVED)));
-        return cats;
+        List<Object[]> rows = categories.findMenuRows(restaurantId, MenuItem.ApprovalStatus.APPROVED);
+        if (rows.isEmpty() && !restaurants.existsById(restaurantId)) throw new NoSuchElementException("No value present");
+
+        // Rows arrive ordered by category then item; group them without touching the DB again
+        Map<Long, MenuCategory> byId = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            MenuCategory c = byId.computeIfAbsent(((MenuCategory) row[0]).getId(), id -> {
+                MenuCategory cat = (MenuCategory) row[0];
+                cat.setItems(new ArrayList<>());
+                return cat;
+            });
+            if (row[1] != null) c.getItems().add((MenuItem) row[1]);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    // Public menu rendered once to JSON; re-rendered only after the restaurant's menu changes
+    public MenuCache.Snapshot snapshot(Long restaurantId){
+        return cache.get(restaurantId, id -> {
+            try {
+                byte[] body = json.writeValueAsBytes(categoriesWithItems(id));
+                return new MenuCache.Snapshot(body, etagOf(body));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to render menu for restaurant " + id, e);
+            }
+        });
+    }
+
+    private static String etagOf(byte[] body){
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
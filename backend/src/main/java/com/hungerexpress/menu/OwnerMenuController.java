@@ -1,10 +1,12 @@
 package com.hungerexpress.menu;
 
+import com.hungerexpress.restaurant.CatalogChangedEvent;
 import com.hungerexpress.restaurant.Restaurant;
 import com.hungerexpress.restaurant.RestaurantRepository;
 import com.hungerexpress.common.CurrentUser;
 import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,6 +26,7 @@ public class OwnerMenuController {
     private final MenuItemRepository items;
     private final UserRepository users;
     private final AdminNotificationService adminNotificationService;
+    private final ApplicationEventPublisher events;
 
     private Restaurant rest(Long id){ return restaurants.findById(id).orElseThrow(); }
 
@@ -61,6 +64,7 @@ public class OwnerMenuController {
         payload.setId(null);
         payload.setRestaurant(r);
         MenuCategory saved = categories.save(payload);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
         return ResponseEntity.created(URI.create("/api/owner/restaurants/"+rid+"/menu/categories/"+saved.getId())).body(saved);
     }
 
@@ -69,12 +73,15 @@ public class OwnerMenuController {
         MenuCategory c = categories.findById(cid).orElseThrow();
         c.setName(payload.getName());
         c.setPosition(payload.getPosition());
-        return ResponseEntity.ok(categories.save(c));
+        MenuCategory saved = categories.save(c);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/categories/{cid}")
     public ResponseEntity<Void> deleteCategory(@PathVariable Long rid, @PathVariable Long cid){
         categories.deleteById(cid);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
         return ResponseEntity.noContent().build();
     }
 
@@ -121,6 +128,7 @@ public class OwnerMenuController {
         }
         
         MenuItem saved = items.save(payload);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
         
         System.out.println("[OwnerMenuController] Menu item submitted for approval: " + saved.getName() + " for restaurant: " + r.getName());
         
@@ -189,6 +197,7 @@ public class OwnerMenuController {
             m.setApprovedBy(null);
             
             MenuItem saved = items.save(m);
+            events.publishEvent(CatalogChangedEvent.menu(rid));
             try {
                 adminNotificationService.notifyItemUpdated(saved, m.getRestaurant());
             } catch (Exception e) {
@@ -198,12 +207,15 @@ public class OwnerMenuController {
             return ResponseEntity.ok(saved);
         }
         
-        return ResponseEntity.ok(items.save(m));
+        MenuItem saved = items.save(m);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/items/{iid}")
     public ResponseEntity<Void> deleteItem(@PathVariable Long rid, @PathVariable Long iid){
         items.deleteById(iid);
+        events.publishEvent(CatalogChangedEvent.menu(rid));
         return ResponseEntity.noContent().build();
     }
 }
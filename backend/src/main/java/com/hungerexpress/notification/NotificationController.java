@@ -1,8 +1,6 @@
 package com.hungerexpress.notification;
 
 import com.hungerexpress.common.CurrentUser;
-import com.hungerexpress.user.User;
-import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,19 +14,15 @@ import java.util.List;
 public class NotificationController {
     
     private final NotificationService notificationService;
-    private final UserRepository userRepo;
     
     // Get all notifications for current user
     @GetMapping
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<List<NotificationEntity>> getNotifications() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
         
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
-        
-        List<NotificationEntity> notifications = notificationService.getUserNotifications(user.getId());
+        List<NotificationEntity> notifications = notificationService.getUserNotifications(userId);
         return ResponseEntity.ok(notifications);
     }
     
@@ -36,13 +30,10 @@ public class NotificationController {
     @GetMapping("/unread")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<List<NotificationEntity>> getUnreadNotifications() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
-        
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
         
-        List<NotificationEntity> notifications = notificationService.getUnreadNotifications(user.getId());
+        List<NotificationEntity> notifications = notificationService.getUnreadNotifications(userId);
         return ResponseEntity.ok(notifications);
     }
     
@@ -50,13 +41,10 @@ public class NotificationController {
     @GetMapping("/unread/count")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<UnreadCountResponse> getUnreadCount() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
-        
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
         
-        Long count = notificationService.getUnreadCount(user.getId());
+        Long count = notificationService.getUnreadCount(userId);
         return ResponseEntity.ok(new UnreadCountResponse(count));
     }
     
@@ -72,13 +60,10 @@ public class NotificationController {
     @PutMapping("/read-all")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<Void> markAllAsRead() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
         
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
-        
-        notificationService.markAllAsRead(user.getId());
+        notificationService.markAllAsRead(userId);
         return ResponseEntity.ok().build();
     }
     
@@ -86,13 +71,10 @@ public class NotificationController {
     @DeleteMapping("/clean")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<Void> cleanOldNotifications() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
-        
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
+        Long userId = CurrentUser.id();
+        if (userId == null) return ResponseEntity.status(401).build();
         
-        notificationService.cleanOldNotifications(user.getId());
+        notificationService.cleanOldNotifications(userId);
         return ResponseEntity.ok().build();
     }
     
@@ -0,0 +1,27 @@
+package com.hungerexpress.orders;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Checkout refused because basket items no longer match the menu. Carries every offending item,
+ * with the current price where there is one, so the client can refresh its basket in one go.
+ * Answered with 409 by the global exception handler.
+ */
+public class BasketRejectedException extends RuntimeException {
+
+    public enum Reason { NOT_FOUND, NOT_APPROVED, UNAVAILABLE, PRICE_CHANGED }
+
+    public record Problem(Long menuItemId, String name, Reason reason, BigDecimal currentPrice) {}
+
+    private final List<Problem> problems;
+
+    public BasketRejectedException(List<Problem> problems) {
+        super(problems.size() + " basket item(s) no longer match the menu");
+        this.problems = List.copyOf(problems);
+    }
+
+    public List<Problem> getProblems() {
+        return problems;
+    }
+}
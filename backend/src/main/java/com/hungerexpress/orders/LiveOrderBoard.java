@@ -0,0 +1,172 @@
+package com.hungerexpress.orders;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process index of live (non-terminal) orders, partitioned by status, restaurant and assigned agent.
+ * Seeded from the DB at startup and kept current by the order mutation paths, so the kanban,
+ * the agents' available queue and "my orders" are served without SQL.
+ * Terminal orders (DELIVERED/CANCELLED) stay visible for {@code app.orders.board.terminal-retention-ms}
+ * and are then swept out.
+ */
+@Component
+@Slf4j
+public class LiveOrderBoard {
+
+    private static final Comparator<LiveOrder> NEWEST_FIRST =
+            Comparator.comparing(LiveOrder::createdAt).thenComparing(LiveOrder::id).reversed();
+    private static final Comparator<LiveOrder> OLDEST_FIRST =
+            Comparator.comparing(LiveOrder::createdAt).thenComparing(LiveOrder::id);
+
+    private final OrderRepository orders;
+    private final Duration terminalRetention;
+
+    private final Map<Long, LiveOrder> byId = new ConcurrentHashMap<>();
+    private final Map<OrderStatus, Set<Long>> byStatus = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> byRestaurant = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> byAgent = new ConcurrentHashMap<>();
+
+    public LiveOrderBoard(OrderRepository orders,
+                          @Value("${app.orders.board.terminal-retention-ms:600000}") long terminalRetentionMs) {
+        this.orders = orders;
+        this.terminalRetention = Duration.ofMillis(terminalRetentionMs);
+    }
+
+    record LiveOrder(Long id, OrderStatus status, Long restaurantId, Long assignedTo,
+                     Instant createdAt, Instant terminalAt, OrderSummaryDto dto) {}
+
+    public static boolean isTerminal(OrderStatus status) {
+        return status == OrderStatus.DELIVERED || status == OrderStatus.CANCELLED;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        List<OrderEntity> live = orders.findByStatusNotInWithItems(List.of(OrderStatus.DELIVERED, OrderStatus.CANCELLED));
+        live.forEach(this::put);
+        log.info("Live order board seeded with {} orders", live.size());
+    }
+
+    /** Indexes (or re-indexes) an order. Items must already be loaded. */
+    public void put(OrderEntity o) {
+        Instant terminalAt = isTerminal(o.getStatus()) ? Instant.now() : null;
+        index(new LiveOrder(o.getId(), o.getStatus(), o.getRestaurantId(), o.getAssignedTo(),
+                o.getCreatedAt(), terminalAt, OrdersController.toDto(o)));
+    }
+
+    /** The order as last indexed, or null if it is not on the board. */
+    public OrderSummaryDto summary(Long orderId) {
+        LiveOrder cur = byId.get(orderId);
+        return cur != null ? cur.dto() : null;
+    }
+
+    /** The order's status as last indexed, or null if it is not on the board. */
+    public OrderStatus statusOf(Long orderId) {
+        LiveOrder cur = byId.get(orderId);
+        return cur != null ? cur.status() : null;
+    }
+
+    public synchronized void remove(Long orderId) {
+        LiveOrder old = byId.remove(orderId);
+        if (old != null) unindex(old);
+    }
+
+    /** Kanban view: everything on the board past PLACED, newest first. */
+    public List<OrderSummaryDto> kanban() {
+        List<LiveOrder> res = new ArrayList<>();
+        byStatus.forEach((status, ids) -> {
+            if (status != OrderStatus.PLACED) collect(ids, res);
+        });
+        return sorted(res, NEWEST_FIRST);
+    }
+
+    /** PLACED orders nobody has claimed yet, oldest first. */
+    public List<OrderSummaryDto> available() {
+        List<LiveOrder> res = new ArrayList<>();
+        collect(byStatus.get(OrderStatus.PLACED), res);
+        res.removeIf(o -> o.assignedTo() != null);
+        return sorted(res, OLDEST_FIRST);
+    }
+
+    public List<OrderSummaryDto> assignedTo(Long agentId) {
+        List<LiveOrder> res = new ArrayList<>();
+        collect(byAgent.get(agentId), res);
+        return sorted(res, NEWEST_FIRST);
+    }
+
+    public List<OrderSummaryDto> forRestaurant(Long restaurantId) {
+        List<LiveOrder> res = new ArrayList<>();
+        collect(byRestaurant.get(restaurantId), res);
+        return sorted(res, NEWEST_FIRST);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.board.sweep-ms:60000}")
+    public void sweepTerminal() {
+        Instant cutoff = Instant.now().minus(terminalRetention);
+        byId.values().stream()
+                .filter(o -> o.terminalAt() != null && o.terminalAt().isBefore(cutoff))
+                .map(LiveOrder::id)
+                .toList()
+                .forEach(this::remove);
+    }
+
+    // Writers serialize on the board; readers only touch the concurrent maps and immutable entries
+    private synchronized void index(LiveOrder next) {
+        LiveOrder old = byId.get(next.id());
+        if (old != null) {
+            // keep the original terminal timestamp so repeated updates don't extend retention
+            if (old.terminalAt() != null && next.terminalAt() != null) {
+                next = new LiveOrder(next.id(), next.status(), next.restaurantId(), next.assignedTo(),
+                        next.createdAt(), old.terminalAt(), next.dto());
+            }
+            unindex(old);
+        }
+        byId.put(next.id(), next);
+        byStatus.computeIfAbsent(next.status(), k -> ConcurrentHashMap.newKeySet()).add(next.id());
+        if (next.restaurantId() != null) {
+            byRestaurant.computeIfAbsent(next.restaurantId(), k -> ConcurrentHashMap.newKeySet()).add(next.id());
+        }
+        if (next.assignedTo() != null) {
+            byAgent.computeIfAbsent(next.assignedTo(), k -> ConcurrentHashMap.newKeySet()).add(next.id());
+        }
+    }
+
+    private void unindex(LiveOrder o) {
+        removeFrom(byStatus, o.status(), o.id());
+        if (o.restaurantId() != null) removeFrom(byRestaurant, o.restaurantId(), o.id());
+        if (o.assignedTo() != null) removeFrom(byAgent, o.assignedTo(), o.id());
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Long>> index, K key, Long id) {
+        Set<Long> ids = index.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) index.remove(key, ids);
+    }
+
+    private void collect(Set<Long> ids, List<LiveOrder> into) {
+        if (ids == null) return;
+        for (Long id : ids) {
+            LiveOrder o = byId.get(id);
+            if (o != null) into.add(o);
+        }
+    }
+
+    private static List<OrderSummaryDto> sorted(List<LiveOrder> res, Comparator<LiveOrder> order) {
+        res.sort(order);
+        return res.stream().map(LiveOrder::dto).toList();
+    }
+}
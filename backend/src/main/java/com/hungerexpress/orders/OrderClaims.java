@@ -0,0 +1,61 @@
+package com.hungerexpress.orders;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process claim table for live orders: which agent holds each order. During a lunch-rush race
+ * for the same PLACED order only the first agent to register here goes on to the database; the rest
+ * are turned away without a write. The conditional claim UPDATE stays the authority (other
+ * instances, assignments made elsewhere), so a holder that loses there gives its entry back.
+ * Entries go when the order is unassigned again or reaches a final status.
+ */
+@Component
+public class OrderClaims {
+
+    private final Map<Long, Long> holders = new ConcurrentHashMap<>();
+    private final Counter won;
+    private final Counter lostInMemory;
+    private final Counter lostInDb;
+
+    public OrderClaims(MeterRegistry meters) {
+        Gauge.builder("orders.claims.held", holders, Map::size).description("Live orders held by an agent claim").register(meters);
+        this.won = Counter.builder("orders.claims").tag("outcome", "won").description("Order claim attempts").register(meters);
+        this.lostInMemory = Counter.builder("orders.claims").tag("outcome", "lost_in_memory").description("Order claim attempts").register(meters);
+        this.lostInDb = Counter.builder("orders.claims").tag("outcome", "lost_in_db").description("Order claim attempts").register(meters);
+    }
+
+    /** Registers {@code agentId} as the order's holder. False if another agent already holds it. */
+    public boolean tryHold(Long orderId, Long agentId) {
+        Long holder = holders.putIfAbsent(orderId, agentId);
+        if (holder == null || holder.equals(agentId)) return true;
+        lostInMemory.increment();
+        return false;
+    }
+
+    /** The database took the claim. */
+    void won() {
+        won.increment();
+    }
+
+    /** The database refused the claim; drops {@code agentId}'s entry so the order isn't blocked. */
+    void lost(Long orderId, Long agentId) {
+        lostInDb.increment();
+        release(orderId, agentId);
+    }
+
+    public void release(Long orderId, Long agentId) {
+        holders.remove(orderId, agentId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderLifecycle(OrderLifecycleEvent e) {
+        if (e.assignedTo() == null || LiveOrderBoard.isTerminal(e.status())) holders.remove(e.orderId());
+    }
+}
@@ -0,0 +1,20 @@
+package com.hungerexpress.orders;
+
+/**
+ * A status change lost to the order's current state: the move isn't allowed from it, or someone
+ * else changed the order first. Carries the order as it is now, so the client can update without
+ * polling. Answered with 409 by the global exception handler.
+ */
+public class OrderConflictException extends RuntimeException {
+
+    private final OrderSummaryDto current;
+
+    public OrderConflictException(String message, OrderSummaryDto current) {
+        super(message);
+        this.current = current;
+    }
+
+    public OrderSummaryDto getCurrent() {
+        return current;
+    }
+}
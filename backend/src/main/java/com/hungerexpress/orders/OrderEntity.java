@@ -2,6 +2,7 @@ package com.hungerexpress.orders;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -9,10 +10,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // keyset pagination: (filter column, created_at, id)
+        @Index(name = "idx_orders_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_orders_restaurant_created", columnList = "restaurant_id, created_at, id"),
+        @Index(name = "idx_orders_created", columnList = "created_at, id")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class OrderEntity {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled ids (blocks of 50) instead of IDENTITY so inserts can be JDBC-batched; see V14
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = true)  // Allow guest orders
@@ -24,6 +32,12 @@ public class OrderEntity {
     @Column(name = "assigned_to")
     private Long assignedTo; // agent user id
 
+    // Bumped by every write, including the conditional status UPDATEs in OrderTransitions
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 32)
     private OrderStatus status;
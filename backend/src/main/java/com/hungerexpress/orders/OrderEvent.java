@@ -0,0 +1,35 @@
+package com.hungerexpress.orders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Compact delta pushed to SSE subscribers when an order changes: enough for a client to move the
+ * order between lists or patch its row without refetching. {@code previousStatus} is null for a
+ * new order and equals {@code status} for changes that don't move it (e.g. an agent rejecting it).
+ */
+public record OrderEvent(
+        Long orderId,
+        Long userId,
+        Long restaurantId,
+        Long assignedTo,
+        OrderStatus previousStatus,
+        OrderStatus status,
+        BigDecimal total,
+        Instant at
+) {
+    public static OrderEvent of(OrderLifecycleEvent e) {
+        return new OrderEvent(e.orderId(), e.userId(), e.restaurantId(), e.assignedTo(),
+                e.previousStatus(), e.status(), e.total(), Instant.now());
+    }
+
+    public static OrderEvent of(OrderEntity o) {
+        return new OrderEvent(o.getId(), o.getUserId(), o.getRestaurantId(), o.getAssignedTo(),
+                o.getStatus(), o.getStatus(), o.getTotal(), Instant.now());
+    }
+
+    /** True while the order is, or just stopped being, up for grabs by any agent. */
+    boolean touchesAgentPool() {
+        return (status == OrderStatus.PLACED && assignedTo == null) || previousStatus == OrderStatus.PLACED;
+    }
+}
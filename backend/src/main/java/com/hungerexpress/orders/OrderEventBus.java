@@ -0,0 +1,363 @@
+package com.hungerexpress.orders;
+
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Routes order changes to the SSE subscribers they concern, as {@code orders:update} events
+ * carrying an {@link OrderEvent} delta.
+ * A subscriber declares who it is ({@link Audience}); an event reaches the order's customer, the
+ * owner of its restaurant, its assigned agent, every agent while the order is in the open pool,
+ * and admins.
+ * Publishing only appends to a lock-free inbox. A single dispatcher thread routes events into
+ * bounded per-subscriber queues, and a small sender pool drains those, so neither request threads
+ * nor the dispatcher ever block on a client. A subscriber that falls a whole queue behind gets its
+ * backlog replaced by a single {@code resync} marker telling it to refetch. A timer sends heartbeat
+ * comments, which also surface dead connections, and reaps subscribers stuck in a send: they stop
+ * receiving at once, and their emitter is closed on a separate thread, since completing it waits
+ * for the blocked write (bounded by the connector's write timeout) to give up.
+ * Every routed event gets a monotonic id (seeded from the boot time, so ids never repeat across
+ * restarts) and is kept in a bounded replay ring; a client reconnecting with {@code Last-Event-ID}
+ * is sent only the events it missed, and gets the greeting (its cue to reload) only when the gap
+ * is no longer in the ring.
+ */
+@Component
+@Slf4j
+public class OrderEventBus {
+
+    public static final String EVENT_NAME = "orders:update";
+    static final String RESYNC = "resync";
+    private static final Object HEARTBEAT = new Object();
+
+    /** An event as sent and retained for replay; {@code id} becomes the SSE event id. */
+    record Sequenced(long id, OrderEvent event) {}
+
+    private record Greeting(String name, Object data, long lastId) {}
+
+    /** Who a subscriber is; decides which events it receives. */
+    public record Audience(Long userId, String role, Set<Long> restaurantIds) {
+        boolean wants(OrderEvent e) {
+            if (role == null) return false;
+            return switch (role) {
+                case "ADMIN" -> true;
+                case "OWNER" -> e.restaurantId() != null && restaurantIds.contains(e.restaurantId());
+                case "AGENT" -> (userId != null && userId.equals(e.assignedTo())) || e.touchesAgentPool();
+                default -> userId != null && userId.equals(e.userId());
+            };
+        }
+    }
+
+    private static final class Subscriber {
+        final Audience audience;
+        final SseEmitter emitter;
+        final BlockingQueue<Object> queue;
+        final AtomicBoolean draining = new AtomicBoolean();
+        // Events up to this id were replayed on subscribe (or predate it) and must not be routed again
+        volatile long replayedThrough = 0L;
+        // Start of the send in progress, or 0 when idle; read by the reaper
+        volatile long sendStartedNanos = 0L;
+
+        Subscriber(Audience audience, SseEmitter emitter, int capacity) {
+            this.audience = audience;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private final RestaurantRepository restaurants;
+    private final int queueCapacity;
+    private final long stallNanos;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Queue<OrderEvent> inbox = new ConcurrentLinkedQueue<>();
+    private final ExecutorService senders;
+    private final ExecutorService closers;
+    private final ScheduledExecutorService timer;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // Replay ring, written by the dispatcher and read by subscribe(); guarded by ringLock
+    private final Object ringLock = new Object();
+    private final Sequenced[] ring;
+    private int ringNext = 0;
+    private int ringSize = 0;
+    private long lastId = System.currentTimeMillis() * 1000L;
+
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter reaped;
+    private final Counter replayed;
+    private final Counter snapshots;
+    private final Timer sendLatency;
+
+    public OrderEventBus(RestaurantRepository restaurants, MeterRegistry meters,
+                         @Value("${app.sse.queue-capacity:64}") int queueCapacity,
+                         @Value("${app.sse.sender-threads:4}") int senderThreads,
+                         @Value("${app.sse.heartbeat-ms:15000}") long heartbeatMs,
+                         @Value("${app.sse.stall-timeout-ms:30000}") long stallTimeoutMs,
+                         @Value("${app.sse.replay-size:1024}") int replaySize) {
+        this.restaurants = restaurants;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMs);
+        this.ring = new Sequenced[Math.max(1, replaySize)];
+        AtomicInteger n = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> daemon(r, "order-events-" + n.incrementAndGet()));
+        // Only subscribers stuck in a send are closed here, so at most one closer per sender thread blocks
+        AtomicInteger c = new AtomicInteger();
+        this.closers = Executors.newCachedThreadPool(r -> daemon(r, "order-events-closer-" + c.incrementAndGet()));
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "order-events-timer"));
+        this.dispatcher = daemon(this::dispatchLoop, "order-events-dispatcher");
+
+        Gauge.builder("sse.orders.inbox", inbox, Queue::size).description("Order events waiting to be routed").register(meters);
+        Gauge.builder("sse.orders.subscribers", subscribers, Set::size).description("Connected order SSE clients").register(meters);
+        Gauge.builder("sse.orders.queued", subscribers, subs -> subs.stream().mapToInt(s -> s.queue.size()).sum())
+                .description("Events queued across all subscribers").register(meters);
+        this.published = Counter.builder("sse.orders.published").description("Order events published").register(meters);
+        this.dropped = Counter.builder("sse.orders.dropped")
+                .description("Events discarded because a subscriber's queue was full").register(meters);
+        this.reaped = Counter.builder("sse.orders.reaped").description("Subscribers removed as dead or stalled").register(meters);
+        this.replayed = Counter.builder("sse.orders.replayed").description("Events replayed to reconnecting clients").register(meters);
+        this.snapshots = Counter.builder("sse.orders.snapshots")
+                .description("Connections that had to start from a full reload").register(meters);
+        this.sendLatency = Timer.builder("sse.orders.send").description("Time to write one event to a client").register(meters);
+
+        dispatcher.start();
+        long hb = Math.max(1000, heartbeatMs);
+        timer.scheduleWithFixedDelay(this::heartbeat, hb, hb, TimeUnit.MILLISECONDS);
+        timer.scheduleWithFixedDelay(this::reapStalled, hb, hb, TimeUnit.MILLISECONDS);
+    }
+
+    /** Audience for the signed-in user; owners are resolved to the restaurants they own. */
+    public Audience audienceFor(Long userId, String role) {
+        String r = role != null ? role.replace("ROLE_", "") : null;
+        Set<Long> owned = "OWNER".equals(r) && userId != null
+                ? restaurants.findByOwnerId(userId).stream().map(Restaurant::getId).collect(Collectors.toSet())
+                : Set.of();
+        return new Audience(userId, r, owned);
+    }
+
+    /**
+     * Registers an emitter for {@code audience}. If {@code lastEventId} is still covered by the replay
+     * ring, the missed events for this audience are sent first; otherwise {@code greeting} goes out
+     * as an event named {@code greetingName}, telling the client to reload.
+     */
+    public SseEmitter subscribe(Audience audience, long timeoutMs, String greetingName, Object greeting, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(audience, emitter, queueCapacity);
+        emitter.onCompletion(() -> subscribers.remove(sub));
+        emitter.onTimeout(() -> subscribers.remove(sub));
+        emitter.onError(ex -> subscribers.remove(sub));
+        // Under the ring lock, so every event is either replayed here or routed afterwards, never both or neither
+        synchronized (ringLock) {
+            List<Sequenced> missed = missedSince(parseId(lastEventId), audience);
+            if (missed != null) {
+                missed.forEach(sub.queue::offer);
+                replayed.increment(missed.size());
+            } else {
+                sub.queue.offer(new Greeting(greetingName, greeting, lastId));
+                snapshots.increment();
+            }
+            sub.replayedThrough = lastId;
+            subscribers.add(sub);
+        }
+        schedule(sub);
+        return emitter;
+    }
+
+    // Events after fromId that the audience wants, or null when the ring no longer covers the gap
+    private List<Sequenced> missedSince(Long fromId, Audience audience) {
+        if (fromId == null || fromId > lastId) return null; // never connected, or an id from another run
+        long oldest = ringSize == 0 ? lastId + 1 : ring[(ringNext - ringSize + ring.length) % ring.length].id();
+        if (fromId < oldest - 1) return null;
+        List<Sequenced> out = new ArrayList<>();
+        for (int i = 0; i < ringSize; i++) {
+            Sequenced e = ring[(ringNext - ringSize + i + ring.length) % ring.length];
+            if (e.id() > fromId && audience.wants(e.event())) {
+                if (out.size() == queueCapacity) return null; // cheaper to reload than to replay
+                out.add(e);
+            }
+        }
+        return out;
+    }
+
+    private static Long parseId(String id) {
+        if (id == null || id.isBlank()) return null;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // After commit, so a client refetching on the event sees the change
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderLifecycle(OrderLifecycleEvent e) {
+        publish(OrderEvent.of(e));
+    }
+
+    /** Hands {@code e} to the dispatcher; never blocks. */
+    public void publish(OrderEvent e) {
+        inbox.offer(e);
+        published.increment();
+        LockSupport.unpark(dispatcher);
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            OrderEvent e = inbox.poll();
+            if (e == null) {
+                // Re-checks on wake-up, so a publish racing this park is never stranded
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+                continue;
+            }
+            try {
+                route(append(e));
+            } catch (Exception ex) {
+                log.error("Failed to route order event {}: {}", e.orderId(), ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private Sequenced append(OrderEvent e) {
+        synchronized (ringLock) {
+            Sequenced s = new Sequenced(++lastId, e);
+            ring[ringNext] = s;
+            ringNext = (ringNext + 1) % ring.length;
+            if (ringSize < ring.length) ringSize++;
+            return s;
+        }
+    }
+
+    private void route(Sequenced e) {
+        for (Subscriber s : subscribers) {
+            if (e.id() > s.replayedThrough && s.audience.wants(e.event())) enqueue(s, e);
+        }
+    }
+
+    private void enqueue(Subscriber s, Object item) {
+        if (!s.queue.offer(item)) {
+            if (item == HEARTBEAT) return; // a backlog already keeps the connection busy
+            // Too far behind for deltas to help; collapse the backlog into one refetch hint
+            dropped.increment(s.queue.size() + 1);
+            s.queue.clear();
+            s.queue.offer(RESYNC);
+        }
+        schedule(s);
+    }
+
+    private void schedule(Subscriber s) {
+        if (s.draining.compareAndSet(false, true)) senders.execute(() -> drain(s));
+    }
+
+    // One drain per subscriber at a time, so its events stay in order
+    private void drain(Subscriber s) {
+        try {
+            Object next;
+            while ((next = s.queue.poll()) != null) {
+                long start = System.nanoTime();
+                s.sendStartedNanos = start;
+                if (next == HEARTBEAT) {
+                    s.emitter.send(SseEmitter.event().comment("ping"));
+                } else if (next instanceof Sequenced e) {
+                    s.emitter.send(SseEmitter.event().id(Long.toString(e.id())).name(EVENT_NAME).data(e.event()));
+                } else if (next instanceof Greeting g) {
+                    // Carries the current id so the client's next reconnect can resume from here
+                    s.emitter.send(SseEmitter.event().id(Long.toString(g.lastId())).name(g.name()).data(g.data()));
+                } else {
+                    s.emitter.send(SseEmitter.event().name(EVENT_NAME).data(next));
+                }
+                s.sendStartedNanos = 0L;
+                sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } catch (Exception ex) {
+            log.debug("Dropping order event subscriber: {}", ex.getMessage());
+            reap(s, ex);
+        } finally {
+            s.sendStartedNanos = 0L;
+            s.draining.set(false);
+        }
+        // An event queued between the last poll and releasing the flag would otherwise wait for the next publish
+        if (!s.queue.isEmpty() && subscribers.contains(s)) schedule(s);
+    }
+
+    private void heartbeat() {
+        for (Subscriber s : subscribers) enqueue(s, HEARTBEAT);
+    }
+
+    // A send blocked this long means the client stopped reading; drop it rather than pin a sender thread
+    private void reapStalled() {
+        long now = System.nanoTime();
+        for (Subscriber s : subscribers) {
+            long started = s.sendStartedNanos;
+            if (started != 0L && now - started > stallNanos && subscribers.remove(s)) {
+                log.debug("Reaping stalled order event subscriber ({} queued)", s.queue.size());
+                reaped.increment();
+                s.queue.clear();
+                // complete() takes the emitter's write lock, held by the blocked send; never wait for it here
+                closers.execute(() -> close(s, null));
+            }
+        }
+    }
+
+    private void reap(Subscriber s, Exception cause) {
+        if (!subscribers.remove(s)) return;
+        reaped.increment();
+        s.queue.clear();
+        close(s, cause);
+    }
+
+    private static void close(Subscriber s, Exception cause) {
+        try {
+            if (cause != null) s.emitter.completeWithError(cause); else s.emitter.complete();
+        } catch (Exception ignored) {
+            // the connection is already gone
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        timer.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,54 @@
+package com.hungerexpress.orders;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Orders and their items take ids from pooled blocks of 50, whose upper bound MySQL keeps in the
+ * one-row tables orders_seq and order_item_seq. V14 seeds them past the existing rows. A local
+ * database whose tables were created by ddl-auto starts them at 1, which is fine while the orders
+ * tables are empty but collides with ids handed out earlier under IDENTITY.
+ * <p>
+ * At startup a table that is behind is moved past the highest id once when Flyway is off (the
+ * ddl-auto profiles); with Flyway on it means V14 was skipped, and the app refuses to start rather
+ * than fail at checkout. The move only ever raises next_val, under the row lock, so instances
+ * starting together can't hand out overlapping blocks.
+ */
+@Component
+@Slf4j
+public class OrderIdBlocks {
+
+    private static final int BLOCK = 50;
+
+    private final JdbcTemplate jdbc;
+    private final boolean flywayEnabled;
+
+    public OrderIdBlocks(JdbcTemplate jdbc, @Value("${spring.flyway.enabled:true}") boolean flywayEnabled) {
+        this.jdbc = jdbc;
+        this.flywayEnabled = flywayEnabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void check() {
+        check("orders_seq", "orders");
+        check("order_item_seq", "order_item");
+    }
+
+    private void check(String sequence, String table) {
+        // The block read from next_val is (next_val - 49 .. next_val), so next_val - 50 must not be below an id in use.
+        // An empty table has no MAX(id), so a fresh next_val of 1 passes.
+        String behind = " WHERE next_val - " + BLOCK + " < (SELECT MAX(id) FROM " + table + ")";
+        Long n = jdbc.queryForObject("SELECT COUNT(*) FROM " + sequence + behind, Long.class);
+        if (n == null || n == 0) return;
+        if (flywayEnabled) {
+            log.error("{} is behind the ids in {}; apply the seeding in V14__order_id_sequences.sql", sequence, table);
+            throw new IllegalStateException(sequence + " would hand out ids already used in " + table);
+        }
+        int moved = jdbc.update("UPDATE " + sequence + " SET next_val = (SELECT MAX(id) + " + (BLOCK + 1) + " FROM " + table + ")" + behind);
+        if (moved > 0) log.warn("Moved {} past the existing ids in {}", sequence, table);
+    }
+}
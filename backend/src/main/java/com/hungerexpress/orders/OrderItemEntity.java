@@ -9,7 +9,8 @@ import java.math.BigDecimal;
 @Table(name = "order_item")
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class OrderItemEntity {
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @SequenceGenerator(name = "order_item_seq", sequenceName = "order_item_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -0,0 +1,44 @@
+package com.hungerexpress.orders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published (synchronously, via Spring's ApplicationEventPublisher) whenever an order is placed
+ * or changes status. {@code previousStatus} is null for a newly placed order.
+ */
+public record OrderLifecycleEvent(
+        Long orderId,
+        Long userId,
+        Long restaurantId,
+        Long assignedTo,
+        Instant createdAt,
+        BigDecimal total,
+        BigDecimal discount,
+        BigDecimal deliveryFee,
+        OrderStatus previousStatus,
+        OrderStatus status
+) {
+    public static OrderLifecycleEvent of(OrderEntity o, OrderStatus previousStatus) {
+        return of(o, previousStatus, o.getStatus());
+    }
+
+    public static OrderLifecycleEvent of(OrderEntity o, OrderStatus previousStatus, OrderStatus status) {
+        return new OrderLifecycleEvent(o.getId(), o.getUserId(), o.getRestaurantId(), o.getAssignedTo(),
+                o.getCreatedAt(), o.getTotal(), o.getDiscount(), o.getDeliveryFee(), previousStatus, status);
+    }
+
+    public boolean isPlacement() {
+        return previousStatus == null;
+    }
+
+    /** True if this event moves the order into {@code s} from a different status. */
+    public boolean entered(OrderStatus s) {
+        return status == s && previousStatus != s;
+    }
+
+    /** True if this event moves the order out of {@code s}. */
+    public boolean left(OrderStatus s) {
+        return previousStatus == s && status != s;
+    }
+}
@@ -0,0 +1,127 @@
+package com.hungerexpress.orders;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.Builder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keyset pagination over orders, newest first, ordered by (createdAt, id).
+ * Runs in two phases because a fetch-joined collection can't be limited in the DB:
+ * first a bounded page of ids, then one batch fetch of those orders with their items.
+ * A request with neither a limit nor a cursor gets every matching order in one page, as the
+ * listings returned before they were paged; clients opt in to paging by sending either.
+ */
+@Service
+public class OrderPageQuery {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final EntityManager em;
+    private final int defaultSize;
+    private final int maxSize;
+
+    public OrderPageQuery(EntityManager em,
+                          @Value("${app.orders.page.default-size:20}") int defaultSize,
+                          @Value("${app.orders.page.max-size:100}") int maxSize) {
+        this.em = em;
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    /** Optional filters; null fields are ignored. */
+    @Builder
+    public record Filter(Long userId, Long restaurantId, Long assignedTo, OrderStatus status) {
+        public static Filter none() { return Filter.builder().build(); }
+    }
+
+    /** One page of orders (items initialized) and the opaque cursor for the next page, or null at the end. */
+    public record Page(List<OrderEntity> orders, String nextCursor) {}
+
+    /** 200 response builder carrying the next-page cursor header when there is one. */
+    public static ResponseEntity.BodyBuilder ok(Page page) {
+        ResponseEntity.BodyBuilder b = ResponseEntity.ok();
+        if (page.nextCursor() != null) b.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return b;
+    }
+
+    @Transactional(readOnly = true)
+    public Page fetch(Filter filter, String cursor, Integer limit) {
+        Map<String, Object> params = new HashMap<>();
+        if (limit == null && (cursor == null || cursor.isBlank())) {
+            String where = where(filter, null, params);
+            TypedQuery<OrderEntity> all = em.createQuery("SELECT DISTINCT o FROM OrderEntity o LEFT JOIN FETCH o.items"
+                    + where + " ORDER BY o.createdAt DESC, o.id DESC", OrderEntity.class);
+            params.forEach(all::setParameter);
+            return new Page(all.getResultList(), null);
+        }
+
+        int size = limit == null || limit <= 0 ? defaultSize : Math.min(limit, maxSize);
+        String where = where(filter, Cursor.decode(cursor), params);
+        TypedQuery<Object[]> q = em.createQuery("SELECT o.id, o.createdAt FROM OrderEntity o" + where
+                + " ORDER BY o.createdAt DESC, o.id DESC", Object[].class);
+        params.forEach(q::setParameter);
+        // one extra row tells us whether another page exists
+        List<Object[]> keys = q.setMaxResults(size + 1).getResultList();
+
+        boolean more = keys.size() > size;
+        if (more) keys = keys.subList(0, size);
+        if (keys.isEmpty()) return new Page(List.of(), null);
+
+        List<Long> ids = keys.stream().map(k -> (Long) k[0]).toList();
+        Map<Long, OrderEntity> byId = em.createQuery(
+                        "SELECT DISTINCT o FROM OrderEntity o LEFT JOIN FETCH o.items WHERE o.id IN :ids", OrderEntity.class)
+                .setParameter("ids", ids)
+                .getResultList().stream()
+                .collect(Collectors.toMap(OrderEntity::getId, Function.identity()));
+
+        List<OrderEntity> page = ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+        Object[] last = keys.get(keys.size() - 1);
+        String next = more ? new Cursor((Instant) last[1], (Long) last[0]).encode() : null;
+        return new Page(page, next);
+    }
+
+    private static String where(Filter filter, Cursor after, Map<String, Object> params) {
+        StringBuilder jpql = new StringBuilder(" WHERE 1 = 1");
+        if (filter.userId() != null) { jpql.append(" AND o.userId = :userId"); params.put("userId", filter.userId()); }
+        if (filter.restaurantId() != null) { jpql.append(" AND o.restaurantId = :restaurantId"); params.put("restaurantId", filter.restaurantId()); }
+        if (filter.assignedTo() != null) { jpql.append(" AND o.assignedTo = :assignedTo"); params.put("assignedTo", filter.assignedTo()); }
+        if (filter.status() != null) { jpql.append(" AND o.status = :status"); params.put("status", filter.status()); }
+        if (after != null) {
+            jpql.append(" AND (o.createdAt < :afterTs OR (o.createdAt = :afterTs AND o.id < :afterId))");
+            params.put("afterTs", after.createdAt());
+            params.put("afterId", after.id());
+        }
+        return jpql.toString();
+    }
+
+    record Cursor(Instant createdAt, Long id) {
+        String encode() {
+            String raw = createdAt.getEpochSecond() + "." + createdAt.getNano() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int colon = raw.indexOf(':');
+                int dot = raw.indexOf('.');
+                long seconds = Long.parseLong(raw.substring(0, dot));
+                long nanos = Long.parseLong(raw.substring(dot + 1, colon));
+                return new Cursor(Instant.ofEpochSecond(seconds, nanos), Long.parseLong(raw.substring(colon + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.hungerexpress.orders;
+
+import com.hungerexpress.cart.CartKey;
+import com.hungerexpress.cart.CartStore;
+import com.hungerexpress.coupons.CouponEntity;
+import com.hungerexpress.coupons.CouponRepository;
+import com.hungerexpress.menu.MenuPriceTable;
+import com.hungerexpress.payments.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Places an order in one transaction: the basket is checked against {@link MenuPriceTable}, the order,
+ * its items and the payment link are written together (ids come from pooled blocks, so the INSERTs
+ * go out as one JDBC batch at commit), and nothing is visible elsewhere until it commits. The live
+ * board, the cart and the order event listeners (SSE, metrics, revenue) only see committed orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderPlacementService {
+
+    private final OrderRepository orders;
+    private final PaymentRepository payments;
+    private final CouponRepository coupons;
+    private final MenuPriceTable prices;
+    private final CartStore cartStore;
+    private final LiveOrderBoard board;
+    private final ApplicationEventPublisher events;
+
+    private record Line(Long menuItemId, BigDecimal claimedPrice, int qty) {}
+
+    /**
+     * Places {@code req}'s items, or the cart's when the request has none. Returns null when there
+     * is nothing to order. Items must be on the menu, approved and available, and prices sent by the
+     * client (optional per item) must match it, else {@link BasketRejectedException} lists every offending item; cart lines
+     * are charged the menu's current price.
+     */
+    @Transactional
+    public OrderEntity place(Long uid, CartKey cartKey, OrdersController.CreateOrderRequest req) {
+        List<Line> lines = new ArrayList<>();
+        CartStore.Snapshot cart = null;
+        if (req != null && req.items() != null && !req.items().isEmpty()) {
+            for (OrdersController.OrderItemRequest i : req.items()) {
+                if (i == null || i.id() == null) throw new IllegalArgumentException("Each item needs a menu item id");
+                lines.add(new Line(i.id(), i.price() != null ? BigDecimal.valueOf(i.price()) : null, i.qty()));
+            }
+        } else if (cartKey != null) {
+            cart = cartStore.get(cartKey);
+            cart.lines().forEach(l -> lines.add(new Line(l.menuItemId(), null, l.qty())));
+        }
+        if (lines.isEmpty()) {
+            log.info("Nothing to order for {}", uid != null ? "user " + uid : "guest");
+            return null;
+        }
+
+        OrderEntity e = OrderEntity.builder()
+                .userId(uid)
+                .status(OrderStatus.PLACED)
+                .tax(BigDecimal.ZERO)
+                .deliveryFee(BigDecimal.ZERO)
+                .build();
+        BigDecimal subtotal = BigDecimal.ZERO;
+        Set<Long> restaurants = new HashSet<>();
+        List<BasketRejectedException.Problem> problems = new ArrayList<>();
+        for (Line l : lines) {
+            MenuPriceTable.Entry m = prices.get(l.menuItemId());
+            BasketRejectedException.Reason reason = check(l, m);
+            if (reason != null) {
+                problems.add(new BasketRejectedException.Problem(l.menuItemId(), m != null ? m.name() : null, reason,
+                        m != null && m.orderable() ? m.price() : null));
+                continue;
+            }
+            if (l.qty() <= 0) throw new IllegalArgumentException("Quantity must be positive for " + m.name());
+            e.getItems().add(OrderItemEntity.builder()
+                    .order(e)
+                    .menuItemId(m.menuItemId())
+                    .name(m.name())
+                    .price(m.price())
+                    .qty(l.qty())
+                    .build());
+            subtotal = subtotal.add(m.price().multiply(BigDecimal.valueOf(l.qty())));
+            restaurants.add(m.restaurantId());
+        }
+        if (!problems.isEmpty()) throw new BasketRejectedException(problems);
+        if (restaurants.size() == 1) e.setRestaurantId(restaurants.iterator().next());
+
+        BigDecimal discount = BigDecimal.ZERO;
+        if (req != null && req.couponCode() != null && !req.couponCode().isBlank()) {
+            Optional<CouponEntity> c = coupons.findByCodeAndActiveIsTrue(req.couponCode().toUpperCase());
+            if (c.isPresent()) {
+                CouponEntity cc = c.get();
+                if ((cc.getExpiresAt() == null || !cc.getExpiresAt().isBefore(Instant.now()))
+                        && (cc.getMinAmount() == null || subtotal.compareTo(cc.getMinAmount()) >= 0)) {
+                    if (cc.getPercentOff() != null) discount = discount.add(subtotal.multiply(BigDecimal.valueOf(cc.getPercentOff()).movePointLeft(2)));
+                    if (cc.getAmountOff() != null) discount = discount.add(cc.getAmountOff());
+                    if (discount.compareTo(subtotal) > 0) discount = subtotal;
+                    e.setCouponCode(cc.getCode());
+                }
+            }
+        }
+        e.setSubtotal(subtotal);
+        e.setDiscount(discount);
+        e.setTotal(subtotal.subtract(discount));
+
+        if (req != null && req.address() != null) {
+            OrdersController.Address a = req.address();
+            e.setShipName(a.name());
+            e.setShipPhone(a.phone());
+            e.setShipLine1(a.line1());
+            e.setShipLine2(a.line2());
+            e.setShipCity(a.city());
+            e.setShipState(a.state());
+            e.setShipPostal(a.postal());
+            e.setShipCountry(a.country());
+        }
+        e.setPlacedAt(Instant.now());
+        orders.save(e);
+
+        // Managed, so the link is flushed with the order
+        if (req != null && req.providerOrderId() != null) {
+            payments.findByProviderOrderId(req.providerOrderId()).ifPresent(p -> {
+                p.setOrder(e);
+                p.setStatus("AUTHORIZED");
+            });
+        }
+
+        // Order listeners are transactional and run once this commits
+        events.publishEvent(OrderLifecycleEvent.of(e, null));
+        CartStore.Snapshot ordered = cart;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                board.put(e);
+                if (cartKey == null) return;
+                // Consume exactly what was ordered; lines added meanwhile stay in the cart
+                if (ordered != null) cartStore.clearIfVersion(cartKey, ordered.version());
+                else cartStore.clear(cartKey);
+            }
+        });
+        log.info("Placed order {} for {} with {} items, total {}", e.getId(), uid != null ? "user " + uid : "guest",
+                e.getItems().size(), e.getTotal());
+        return e;
+    }
+
+    private static BasketRejectedException.Reason check(Line l, MenuPriceTable.Entry m) {
+        if (m == null) return BasketRejectedException.Reason.NOT_FOUND;
+        if (!m.approved()) return BasketRejectedException.Reason.NOT_APPROVED;
+        if (!m.available()) return BasketRejectedException.Reason.UNAVAILABLE;
+        if (l.claimedPrice() != null
+                && l.claimedPrice().movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() != m.priceCents()) {
+            return BasketRejectedException.Reason.PRICE_CHANGED;
+        }
+        return null;
+    }
+}
@@ -1,9 +1,13 @@
 package com.hungerexpress.orders;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,4 +28,52 @@ public interface OrderRepository extends JpaRepository<OrderEntity, Long> {
     
     @Query("SELECT DISTINCT o FROM OrderEntity o LEFT JOIN FETCH o.items ORDER BY o.createdAt DESC")
     List<OrderEntity> findAllWithItems();
+    
+    @Query("SELECT DISTINCT o FROM OrderEntity o LEFT JOIN FETCH o.items WHERE o.status NOT IN :statuses")
+    List<OrderEntity> findByStatusNotInWithItems(@Param("statuses") Collection<OrderStatus> statuses);
+    
+    // Projection for rollup rebuilds: id, restaurantId, createdAt, total, discount, status
+    @Query("SELECT o.id, o.restaurantId, o.createdAt, o.total, o.discount, o.status FROM OrderEntity o WHERE o.id > :afterId ORDER BY o.id ASC")
+    List<Object[]> findMetricRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Projection for the revenue ledger recompute: id, restaurantId, createdAt, total of delivered orders
+    @Query("SELECT o.id, o.restaurantId, o.createdAt, o.total FROM OrderEntity o WHERE o.status = com.hungerexpress.orders.OrderStatus.DELIVERED AND o.restaurantId IS NOT NULL AND o.id > :afterId ORDER BY o.id ASC")
+    List<Object[]> findDeliveredRevenueRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Moves the order {@code from} -> {@code to} in one statement, only while it is still in {@code from}
+     * (and at {@code version} / assigned to {@code agentId} when those are given). Stamps the status's
+     * timestamp and bumps the version; with {@code unassign}, also clears the assigned agent. Returns
+     * the rows changed.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE OrderEntity o SET o.status = :to, o.version = o.version + 1, " +
+           "o.preparingAt = CASE WHEN :to IN (com.hungerexpress.orders.OrderStatus.ACCEPTED, com.hungerexpress.orders.OrderStatus.PREPARING) THEN :now ELSE o.preparingAt END, " +
+           "o.dispatchedAt = CASE WHEN :to = com.hungerexpress.orders.OrderStatus.OUT_FOR_DELIVERY THEN :now ELSE o.dispatchedAt END, " +
+           "o.deliveredAt = CASE WHEN :to = com.hungerexpress.orders.OrderStatus.DELIVERED THEN :now ELSE o.deliveredAt END, " +
+           "o.cancelledAt = CASE WHEN :to = com.hungerexpress.orders.OrderStatus.CANCELLED THEN :now ELSE o.cancelledAt END, " +
+           "o.assignedTo = CASE WHEN :unassign = true THEN NULL ELSE o.assignedTo END " +
+           "WHERE o.id = :id AND o.status = :from " +
+           "AND (:version IS NULL OR o.version = :version) " +
+           "AND (:agentId IS NULL OR o.assignedTo = :agentId)")
+    int transition(@Param("id") Long id, @Param("from") OrderStatus from, @Param("to") OrderStatus to,
+                   @Param("version") Long version, @Param("agentId") Long agentId, @Param("unassign") boolean unassign,
+                   @Param("now") Instant now);
+
+    /**
+     * An agent's claim: PLACED -> ACCEPTED and assigned to {@code agentId}, only if nobody else holds the
+     * order. Exactly one concurrent claimer gets 1.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE OrderEntity o SET o.assignedTo = :agentId, o.status = com.hungerexpress.orders.OrderStatus.ACCEPTED, " +
+           "o.preparingAt = :now, o.version = o.version + 1 " +
+           "WHERE o.id = :id AND o.status = com.hungerexpress.orders.OrderStatus.PLACED " +
+           "AND (o.assignedTo IS NULL OR o.assignedTo = :agentId)")
+    int claim(@Param("id") Long id, @Param("agentId") Long agentId, @Param("now") Instant now);
+
+    /** Hands a PLACED order back to the pool, only while {@code agentId} holds it. */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE OrderEntity o SET o.assignedTo = NULL, o.version = o.version + 1 " +
+           "WHERE o.id = :id AND o.status = com.hungerexpress.orders.OrderStatus.PLACED AND o.assignedTo = :agentId")
+    int unassign(@Param("id") Long id, @Param("agentId") Long agentId);
 }
@@ -1,3 +1,30 @@
 package com.hungerexpress.orders;
 
-public enum OrderStatus { PLACED, ACCEPTED, PREPARING, OUT_FOR_DELIVERY, DELIVERED, CANCELLED }
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order lifecycle. {@link #canMoveTo} is the one transition table every status change goes through
+ * (see {@link OrderTransitions}); DELIVERED and CANCELLED are final.
+ */
+public enum OrderStatus {
+    PLACED, ACCEPTED, PREPARING, OUT_FOR_DELIVERY, DELIVERED, CANCELLED;
+
+    private static final Map<OrderStatus, Set<OrderStatus>> NEXT = new EnumMap<>(OrderStatus.class);
+
+    static {
+        NEXT.put(PLACED, EnumSet.of(ACCEPTED, PREPARING, CANCELLED));
+        // Agents may deliver straight from an accepted order (no separate pickup step)
+        NEXT.put(ACCEPTED, EnumSet.of(PREPARING, OUT_FOR_DELIVERY, DELIVERED, CANCELLED));
+        NEXT.put(PREPARING, EnumSet.of(OUT_FOR_DELIVERY, DELIVERED, CANCELLED));
+        NEXT.put(OUT_FOR_DELIVERY, EnumSet.of(DELIVERED));
+        NEXT.put(DELIVERED, EnumSet.noneOf(OrderStatus.class));
+        NEXT.put(CANCELLED, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    public boolean canMoveTo(OrderStatus next) {
+        return NEXT.get(this).contains(next);
+    }
+}
@@ -2,4 +2,5 @@ package com.hungerexpress.orders;
 
 import java.util.List;
 
-public record OrderSummaryDto(Long id, String status, double total, Long createdAt, List<OrderItemDto> items) {}
+/** {@code version} is the order's optimistic-lock version, which status updates may send back. */
+public record OrderSummaryDto(Long id, String status, double total, Long createdAt, List<OrderItemDto> items, Long version) {}
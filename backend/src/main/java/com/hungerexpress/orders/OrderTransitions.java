@@ -0,0 +1,166 @@
+package com.hungerexpress.orders;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * The one place order status changes are made. Each move is a single conditional UPDATE that only
+ * matches while the order is still in the status it is leaving (and at the caller's version, if one
+ * was sent), so two writers racing for the same order cannot both win.
+ * The status being left is taken from the {@link LiveOrderBoard}, so the write needs no read first;
+ * the order is only read when the board doesn't know it or the write missed, to retry once or to
+ * report the current state in an {@link OrderConflictException}.
+ * The board and the order event listeners see the change once it commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderTransitions {
+
+    private final OrderRepository orders;
+    private final LiveOrderBoard board;
+    private final ApplicationEventPublisher events;
+    private final OrderClaims claims;
+
+    /** Moves the order to {@code to} if the transition table allows it. Empty if there is no such order. */
+    @Transactional
+    public Optional<OrderEntity> move(Long orderId, OrderStatus to, Long expectedVersion) {
+        return apply(orderId, to, expectedVersion, null, true);
+    }
+
+    /**
+     * As {@link #move}, for the agent the order is assigned to; anyone else is denied. A refusal has
+     * written nothing, so it leaves a caller's surrounding transaction usable.
+     */
+    @Transactional(noRollbackFor = {OrderConflictException.class, AccessDeniedException.class})
+    public Optional<OrderEntity> moveAsAgent(Long orderId, OrderStatus to, Long agentId) {
+        return apply(orderId, to, null, agentId, true);
+    }
+
+    /**
+     * An agent claims a PLACED order: PLACED -> ACCEPTED, assigned to {@code agentId}. Agents racing
+     * for the same order are settled in {@link OrderClaims} first, so only one of them writes; the
+     * write itself is a single conditional UPDATE, with a read only to build the response.
+     * Accepting an order the agent already holds returns it unchanged.
+     */
+    @Transactional
+    public Optional<OrderEntity> accept(Long orderId, Long agentId) {
+        if (!claims.tryHold(orderId, agentId)) {
+            OrderSummaryDto cur = board.summary(orderId);
+            if (cur == null) cur = orders.findByIdWithItems(orderId).map(OrdersController::toDto).orElse(null);
+            throw new OrderConflictException("Order " + orderId + " was already taken by another agent", cur);
+        }
+        // Give the claim back if this transaction doesn't commit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) claims.release(orderId, agentId);
+            }
+        });
+        if (orders.claim(orderId, agentId, Instant.now()) == 1) {
+            claims.won();
+            return Optional.of(committed(orderId, OrderStatus.PLACED));
+        }
+
+        OrderEntity cur = orders.findByIdWithItems(orderId).orElse(null);
+        if (cur != null && cur.getStatus() == OrderStatus.ACCEPTED && agentId.equals(cur.getAssignedTo())) {
+            return Optional.of(cur);
+        }
+        claims.lost(orderId, agentId);
+        if (cur == null) return Optional.empty();
+        throw conflict(cur, OrderStatus.ACCEPTED);
+    }
+
+    /**
+     * An agent turns down a PLACED order assigned to them: it goes back to the pool, in one
+     * conditional UPDATE that only matches while this agent still holds it. Its claim is dropped once
+     * that commits. Rejecting an order that is already back in the pool returns it unchanged.
+     */
+    @Transactional
+    public Optional<OrderEntity> reject(Long orderId, Long agentId) {
+        if (orders.unassign(orderId, agentId) == 1) {
+            return Optional.of(committed(orderId, OrderStatus.PLACED));
+        }
+        OrderEntity cur = orders.findByIdWithItems(orderId).orElse(null);
+        if (cur == null) return Optional.empty();
+        if (cur.getStatus() == OrderStatus.PLACED && cur.getAssignedTo() == null) {
+            claims.release(orderId, agentId);
+            return Optional.of(cur);
+        }
+        throw new OrderConflictException("Order " + orderId + " is " + cur.getStatus()
+                + (cur.getAssignedTo() != null ? " and held by another agent" : "") + "; it can't be rejected",
+                OrdersController.toDto(cur));
+    }
+
+    /**
+     * Admin override: any status, but still only from the state the admin's write was based on.
+     * Sending an order back to PLACED or cancelling it also takes it off its agent.
+     */
+    @Transactional
+    public Optional<OrderEntity> override(Long orderId, OrderStatus to, Long expectedVersion) {
+        return apply(orderId, to, expectedVersion, null, false);
+    }
+
+    private Optional<OrderEntity> apply(Long orderId, OrderStatus to, Long expectedVersion, Long agentId,
+                                        boolean enforce) {
+        Instant now = Instant.now();
+        boolean unassign = !enforce && (to == OrderStatus.PLACED || to == OrderStatus.CANCELLED);
+        OrderStatus guess = board.statusOf(orderId);
+        if (guess != null && guess != to && (!enforce || guess.canMoveTo(to))
+                && orders.transition(orderId, guess, to, expectedVersion, agentId, unassign, now) == 1) {
+            return Optional.of(committed(orderId, guess));
+        }
+        // The board didn't know the order or was behind, or another writer got there first
+        for (int attempt = 0; attempt < 2; attempt++) {
+            OrderEntity cur = orders.findByIdWithItems(orderId).orElse(null);
+            if (cur == null) return Optional.empty();
+            checkAgent(cur, agentId);
+            OrderStatus from = cur.getStatus();
+            // Already there: a repeated request is answered with the order as it is
+            if (from == to) return Optional.of(cur);
+            if (enforce && !from.canMoveTo(to)) throw conflict(cur, to);
+            if (expectedVersion != null && !expectedVersion.equals(cur.getVersion())) throw conflict(cur, to);
+            if (orders.transition(orderId, from, to, expectedVersion, agentId, unassign, now) == 1) {
+                return Optional.of(committed(orderId, from));
+            }
+        }
+        OrderEntity cur = orders.findByIdWithItems(orderId).orElse(null);
+        if (cur == null) return Optional.empty();
+        checkAgent(cur, agentId);
+        throw conflict(cur, to);
+    }
+
+    private OrderEntity committed(Long orderId, OrderStatus previous) {
+        OrderEntity o = orders.findByIdWithItems(orderId).orElseThrow();
+        // Order listeners are transactional and run once this commits
+        events.publishEvent(OrderLifecycleEvent.of(o, previous));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                board.put(o);
+            }
+        });
+        log.info("Order {} moved {} -> {}", o.getId(), previous, o.getStatus());
+        return o;
+    }
+
+    private static void checkAgent(OrderEntity o, Long agentId) {
+        if (agentId != null && !agentId.equals(o.getAssignedTo())) {
+            throw new AccessDeniedException("Order " + o.getId() + " is not assigned to this agent");
+        }
+    }
+
+    private static OrderConflictException conflict(OrderEntity cur, OrderStatus to) {
+        return new OrderConflictException("Order " + cur.getId() + " is " + cur.getStatus() + " (version "
+                + cur.getVersion() + ") and cannot be moved to " + to, OrdersController.toDto(cur));
+    }
+}
@@ -2,6 +2,8 @@ package com.hungerexpress.owner;
 
 import com.hungerexpress.common.CurrentUser;
 import com.hungerexpress.orders.OrderEntity;
+import com.hungerexpress.orders.OrderEventBus;
+import com.hungerexpress.orders.OrderPageQuery;
 import com.hungerexpress.orders.OrderRepository;
 import com.hungerexpress.orders.OrderStatus;
 import com.hungerexpress.restaurant.Restaurant;
@@ -15,6 +17,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -35,9 +38,8 @@ public class OwnerController {
     private final OrderRepository orders;
     private final UserRepository users;
     private final RestaurantRepository restaurants;
-    
-    // Store SSE emitters for live updates
-    private final List<SseEmitter> emitters = new ArrayList<>();
+    private final OrderPageQuery pages;
+    private final OrderEventBus eventBus;
 
     record TopItem(String name, int count) {}
     record DashboardSummary(
@@ -64,7 +66,9 @@ public class OwnerController {
 
     @GetMapping("/orders")
     @Transactional(readOnly = true)
-    public ResponseEntity<List<OrderResponse>> getAllOrders(@RequestParam(required = false) String view) {
+    public ResponseEntity<List<OrderResponse>> getAllOrders(@RequestParam(required = false) String view,
+                                                            @RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer limit) {
         try {
             System.out.println("[OwnerController] GET /api/owner/orders called with view=" + view);
             
@@ -74,11 +78,10 @@ public class OwnerController {
                 return ResponseEntity.status(401).build();
             }
             
-            // Get all orders (in real-world, filter by restaurant owned by this user)
-            List<OrderEntity> allOrders = orders.findAll();
-            System.out.println("[OwnerController] Found " + allOrders.size() + " total orders");
+            // Get all orders (in real-world, filter by restaurant owned by this user), one page at a time
+            OrderPageQuery.Page page = pages.fetch(OrderPageQuery.Filter.none(), cursor, limit);
             
-            List<OrderResponse> response = allOrders.stream()
+            List<OrderResponse> response = page.orders().stream()
                 .map(order -> new OrderResponse(
                     order.getId(),
                     order.getStatus().name(),
@@ -91,7 +94,7 @@ public class OwnerController {
                 .toList();
             
             System.out.println("[OwnerController] Returning " + response.size() + " orders");
-            return ResponseEntity.ok(response);
+            return OrderPageQuery.ok(page).body(response);
             
         } catch (Exception e) {
             System.err.println("[OwnerController] ERROR in getAllOrders: " + e.getMessage());
@@ -100,74 +103,18 @@ public class OwnerController {
         }
     }
 
+    // Live order updates for this owner's restaurants; "orders:update" events carry an OrderEvent delta.
+    // "connected" is sent only when missed events can't be replayed, and means reload.
     @GetMapping(value = "/orders/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamOrders(@RequestParam(required = false) String token) {
-        System.out.println("[OwnerController] SSE connection request received");
-        
-        // Create SSE emitter with 30-minute timeout
-        SseEmitter emitter = new SseEmitter(1800000L); // 30 minutes
-        
-        // Add to active emitters list
-        synchronized (emitters) {
-            emitters.add(emitter);
-            System.out.println("[OwnerController] SSE client connected. Total clients: " + emitters.size());
-        }
-        
-        // Remove emitter when completed or timed out
-        emitter.onCompletion(() -> {
-            synchronized (emitters) {
-                emitters.remove(emitter);
-                System.out.println("[OwnerController] SSE client disconnected. Total clients: " + emitters.size());
-            }
-        });
-        
-        emitter.onTimeout(() -> {
-            synchronized (emitters) {
-                emitters.remove(emitter);
-                System.out.println("[OwnerController] SSE client timed out. Total clients: " + emitters.size());
-            }
-        });
-        
-        emitter.onError((ex) -> {
-            synchronized (emitters) {
-                emitters.remove(emitter);
-                System.err.println("[OwnerController] SSE client error: " + ex.getMessage());
-            }
-        });
-        
-        // Send initial connection message
-        try {
-            emitter.send(SseEmitter.event()
-                .name("connected")
-                .data("SSE connection established"));
-        } catch (Exception e) {
-            System.err.println("[OwnerController] Failed to send connection message: " + e.getMessage());
-        }
-        
-        return emitter;
-    }
-    
-    // Helper method to broadcast order updates to all connected clients
-    public void broadcastOrderUpdate() {
-        System.out.println("[OwnerController] Broadcasting order update to " + emitters.size() + " clients");
-        
-        synchronized (emitters) {
-            List<SseEmitter> deadEmitters = new ArrayList<>();
-            
-            for (SseEmitter emitter : emitters) {
-                try {
-                    emitter.send(SseEmitter.event()
-                        .name("orders:update")
-                        .data("Order list updated"));
-                } catch (Exception e) {
-                    System.err.println("[OwnerController] Failed to send to client, marking as dead");
-                    deadEmitters.add(emitter);
-                }
-            }
-            
-            // Remove dead emitters
-            emitters.removeAll(deadEmitters);
-        }
+    public SseEmitter streamOrders(@RequestParam(required = false) String token,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                   @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        Long uid = CurrentUser.id() != null ? CurrentUser.id()
+            : users.findByEmail(CurrentUser.email()).map(User::getId).orElse(null);
+        OrderEventBus.Audience audience = eventBus.audienceFor(uid, "OWNER");
+        // 30-minute timeout; EventSource reconnects on its own and resumes from Last-Event-ID
+        return eventBus.subscribe(audience, 1800000L, "connected", "SSE connection established",
+            lastEventId != null ? lastEventId : lastEventIdParam);
     }
 
     @GetMapping("/summary")
@@ -300,25 +247,23 @@ public class OwnerController {
     @Transactional(readOnly = true)
     public ResponseEntity<List<RestaurantOrdersResponse>> getRestaurantOrders(
         @PathVariable Long rid,
-        @RequestParam(required = false) String status
+        @RequestParam(required = false) String status,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit
     ) {
-        // In real-world, verify owner owns this restaurant
-        List<OrderEntity> restaurantOrders = orders.findAll().stream()
-            .filter(o -> rid.equals(o.getRestaurantId()))
-            .toList();
-
         // Filter by status if provided
+        OrderStatus statusEnum = null;
         if (status != null && !status.isEmpty()) {
             try {
-                OrderStatus statusEnum = OrderStatus.valueOf(status.toUpperCase());
-                restaurantOrders = restaurantOrders.stream()
-                    .filter(o -> o.getStatus() == statusEnum)
-                    .toList();
+                statusEnum = OrderStatus.valueOf(status.toUpperCase());
             } catch (IllegalArgumentException ignored) {}
         }
 
-        List<RestaurantOrdersResponse> response = restaurantOrders.stream()
-            .sorted((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()))
+        // In real-world, verify owner owns this restaurant
+        OrderPageQuery.Page page = pages.fetch(
+            OrderPageQuery.Filter.builder().restaurantId(rid).status(statusEnum).build(), cursor, limit);
+
+        List<RestaurantOrdersResponse> response = page.orders().stream()
             .map(o -> new RestaurantOrdersResponse(
                 o.getId(),
                 o.getStatus().name(),
@@ -330,7 +275,7 @@ public class OwnerController {
             ))
             .toList();
 
-        return ResponseEntity.ok(response);
+        return OrderPageQuery.ok(page).body(response);
     }
 
     // Get all restaurants owned by this owner
@@ -339,18 +284,11 @@ public class OwnerController {
     public ResponseEntity<List<RestaurantDto>> getOwnerRestaurants() {
         try {
             // Get current owner user
-            String email = Optional.ofNullable(CurrentUser.email()).orElse(null);
-            if (email == null) {
+            Long ownerId = CurrentUser.id();
+            if (ownerId == null) {
                 return ResponseEntity.status(401).build();
             }
             
-            Optional<User> currentUser = users.findByEmail(email);
-            if (currentUser.isEmpty()) {
-                return ResponseEntity.status(401).build();
-            }
-            
-            Long ownerId = currentUser.get().getId();
-            
             // Get all restaurants for this owner
             List<Restaurant> ownerRestaurants = restaurants.findByOwnerId(ownerId);
             
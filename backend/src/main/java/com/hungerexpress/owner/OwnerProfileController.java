@@ -1,12 +1,14 @@
 package com.hungerexpress.owner;
 
 import com.hungerexpress.common.CurrentUser;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
 import com.hungerexpress.restaurant.Cuisine;
 import com.hungerexpress.restaurant.Restaurant;
 import com.hungerexpress.restaurant.RestaurantRepository;
 import com.hungerexpress.user.User;
 import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +34,7 @@ public class OwnerProfileController {
     private final UserRepository users;
     private final RestaurantRepository restaurants;
     private final OwnerProfileRepository ownerProfiles;
+    private final ApplicationEventPublisher events;
 
     // DTOs
     public record OwnerProfileResponse(
@@ -300,6 +303,7 @@ public class OwnerProfileController {
             restaurant.setIsOnline(newStatus);
             restaurant.setUpdatedAt(Instant.now());
             restaurants.save(restaurant);
+            events.publishEvent(CatalogChangedEvent.listing(restaurantId));
 
             System.out.println("[OwnerProfileController] Restaurant " + restaurantId + " is now " + (newStatus ? "ONLINE" : "OFFLINE"));
 
@@ -454,6 +458,7 @@ public class OwnerProfileController {
             .build();
 
         Restaurant saved = restaurants.save(restaurant);
+        events.publishEvent(CatalogChangedEvent.listing(saved.getId()));
         System.out.println("[OwnerProfileController] Restaurant created with ID: " + saved.getId());
 
         RestaurantSummary summary = new RestaurantSummary(
@@ -538,6 +543,7 @@ public class OwnerProfileController {
         restaurant.setProfileCompleted(true);
 
         Restaurant saved = restaurants.save(restaurant);
+        events.publishEvent(CatalogChangedEvent.listing(saved.getId()));
 
         RestaurantSummary summary = new RestaurantSummary(
             saved.getId(),
@@ -1,10 +1,16 @@
 package com.hungerexpress.payments;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface PaymentRepository extends JpaRepository<PaymentEntity, Long> {
     Optional<PaymentEntity> findByProviderOrderId(String providerOrderId);
     Optional<PaymentEntity> findTopByOrder_IdOrderByCreatedAtDesc(Long orderId);
+
+    @Query("SELECT DISTINCT p.order.id FROM PaymentEntity p WHERE p.status = :status AND p.order IS NOT NULL")
+    List<Long> findOrderIdsByStatus(@Param("status") String status);
 }
@@ -1,5 +1,9 @@
 package com.hungerexpress.payments;
 
+import com.hungerexpress.cart.CartKey;
+import com.hungerexpress.common.CurrentUser;
+import com.hungerexpress.idempotency.IdempotencyStore;
+import com.hungerexpress.revenue.RevenueLedgerService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -9,6 +13,7 @@ import java.util.HashMap;
 
 import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
 import com.razorpay.Refund;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -31,14 +36,36 @@ public class PaymentsController {
     private static final Logger log = LoggerFactory.getLogger(PaymentsController.class);
     private final PaymentRepository payments;
     private final PaymentWebhookEventRepository webhookEvents;
+    private final RevenueLedgerService revenueLedger;
+    private final IdempotencyStore idempotency;
 
-    public PaymentsController(PaymentRepository payments, PaymentWebhookEventRepository webhookEvents){
+    public PaymentsController(PaymentRepository payments, PaymentWebhookEventRepository webhookEvents,
+                              RevenueLedgerService revenueLedger, IdempotencyStore idempotency){
         this.payments = payments;
         this.webhookEvents = webhookEvents;
+        this.revenueLedger = revenueLedger;
+        this.idempotency = idempotency;
     }
 
+    public record PaymentOrder(String orderId, long amount, String currency, String keyId) {}
+
     @PostMapping("/order")
-    public Map<String,Object> createOrder(@RequestBody Map<String,Object> req) throws Exception {
+    public ResponseEntity<PaymentOrder> createOrder(@RequestBody Map<String,Object> req,
+                                                    @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                                    @RequestHeader(value = CartKey.SESSION_HEADER, required = false) String cartSession) {
+        CartKey caller = CartKey.resolve(CurrentUser.id(), cartSession);
+        String scope = caller == null ? null : IdempotencyStore.scope("payments", caller.userId(), caller.guestSession());
+        // A retried call gets the first Razorpay order back instead of opening a second payment link
+        return idempotency.execute(scope, idempotencyKey, req, PaymentOrder.class, () -> {
+            try {
+                return ResponseEntity.ok(openOrder(req));
+            } catch (RazorpayException ex) {
+                throw new IllegalStateException("Could not create Razorpay order", ex);
+            }
+        });
+    }
+
+    private PaymentOrder openOrder(Map<String,Object> req) throws RazorpayException {
         long amount = ((Number)req.getOrDefault("amount", 0)).longValue(); // in paise
         String receipt = (String) req.getOrDefault("receipt", ("rcpt_"+System.currentTimeMillis()));
 
@@ -59,12 +86,7 @@ public class PaymentsController {
                 .build();
         payments.save(p);
 
-        Map<String,Object> res = new HashMap<>();
-        res.put("orderId", order.get("id"));
-        res.put("amount", order.get("amount"));
-        res.put("currency", order.get("currency"));
-        res.put("keyId", keyId);
-        return res;
+        return new PaymentOrder(order.get("id"), ((Number) order.get("amount")).longValue(), order.get("currency"), keyId);
     }
 
     @PostMapping("/webhook")
@@ -115,6 +137,11 @@ public class PaymentsController {
                                     default -> { /* keep existing */ }
                                 }
                                 payments.save(p);
+                                if ("REFUNDED".equals(p.getStatus()) && p.getOrder() != null) {
+                                    Long orderId = p.getOrder().getId();
+                                    try { revenueLedger.reverse(orderId); }
+                                    catch (Exception ex){ log.error("Refunded order {} but failed to reverse its revenue", orderId, ex); }
+                                }
                             });
                         }
                     }
@@ -164,6 +191,8 @@ public class PaymentsController {
                 Refund r = client.payments.refund(p.getProviderPaymentId(), opts);
                 p.setStatus("REFUNDED");
                 payments.save(p);
+                try { revenueLedger.reverse(orderId); }
+                catch (Exception ex){ log.error("Refunded order {} but failed to reverse its revenue", orderId, ex); }
                 Map<String,Object> res = new HashMap<>();
                 res.put("refundId", r.get("id"));
                 res.put("status", p.getStatus());
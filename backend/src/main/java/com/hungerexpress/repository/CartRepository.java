@@ -18,6 +18,12 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
      */
     List<Cart> findByUserOrderByCreatedAtDesc(User user);
     
+    /**
+     * Load a user's cart with its menu items and restaurants in one query, oldest line first
+     */
+    @Query("SELECT c FROM Cart c JOIN FETCH c.menuItem m JOIN FETCH m.restaurant WHERE c.user.id = :userId ORDER BY c.createdAt, c.id")
+    List<Cart> findByUserIdWithMenuItem(@Param("userId") Long userId);
+    
     /**
      * Find specific cart item by user and menu item
      */
@@ -0,0 +1,18 @@
+package com.hungerexpress.restaurant;
+
+/**
+ * Published after a restaurant's public listing data or its menu is modified, so read caches
+ * can drop exactly what changed. Listeners run after the writing transaction commits.
+ */
+public record CatalogChangedEvent(Long restaurantId, boolean listingChanged, boolean menuChanged) {
+
+    /** Restaurant fields shown in the public list (name, flags, rating, ...) changed. */
+    public static CatalogChangedEvent listing(Long restaurantId) {
+        return new CatalogChangedEvent(restaurantId, true, false);
+    }
+
+    /** Categories or items of the restaurant's menu changed. */
+    public static CatalogChangedEvent menu(Long restaurantId) {
+        return new CatalogChangedEvent(restaurantId, false, true);
+    }
+}
@@ -0,0 +1,58 @@
+package com.hungerexpress.restaurant;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of public restaurant list results, keyed by the normalized filter.
+ * A listing change can move a restaurant in or out of any filter, so it clears every entry;
+ * menu changes only affect text searches (dish names are searchable), so they clear just those.
+ * The TTL only bounds staleness from writes that bypass events.
+ */
+@Component
+public class RestaurantListCache {
+
+    record Key(String search, Cuisine cuisine, Double minRating) {}
+
+    private final Cache<Key, List<Restaurant>> cache;
+
+    public RestaurantListCache(MeterRegistry meters,
+                               @Value("${app.catalog.cache.list-max-size:500}") long maxSize,
+                               @Value("${app.catalog.cache.ttl-ms:600000}") long ttlMs) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meters, cache, "restaurant.list");
+    }
+
+    public List<Restaurant> get(String search, Cuisine cuisine, Double minRating, Supplier<List<Restaurant>> loader) {
+        // the query compares case-insensitively, so case variants share an entry
+        String normalized = search == null ? null : search.toLowerCase(Locale.ROOT);
+        return cache.get(new Key(normalized, cuisine, minRating), k -> List.copyOf(loader.get()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent e) {
+        if (e.listingChanged()) {
+            cache.invalidateAll();
+        } else if (e.menuChanged()) {
+            cache.asMap().keySet().removeIf(k -> k.search() != null);
+        }
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
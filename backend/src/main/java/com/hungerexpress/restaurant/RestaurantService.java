@@ -1,5 +1,6 @@
 package com.hungerexpress.restaurant;
 
+import com.hungerexpress.search.CatalogSearchIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -10,12 +11,15 @@ import java.util.List;
 public class RestaurantService {
 
     private final RestaurantRepository repository;
+    private final RestaurantListCache cache;
+    private final CatalogSearchIndex index;
 
     public List<Restaurant> list(String search, Cuisine cuisine, Double minRating) {
-        return repository.search(
-            (search == null || search.isBlank()) ? null : search,
-            cuisine,
-            minRating
-        );
+        String s = (search == null || search.isBlank()) ? null : search;
+        return cache.get(s, cuisine, minRating, () -> {
+            // Text search goes to the in-memory index once it's built; plain filtering stays in SQL
+            if (s != null && index.isReady()) return index.search(s, cuisine, minRating);
+            return repository.search(s, cuisine, minRating);
+        });
     }
 }
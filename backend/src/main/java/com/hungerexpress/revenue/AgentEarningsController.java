@@ -1,12 +1,8 @@
 package com.hungerexpress.revenue;
 
-import com.hungerexpress.agent.AgentOrderAssignment;
 import com.hungerexpress.agent.AgentOrderRepository;
 import com.hungerexpress.common.CurrentUser;
-import com.hungerexpress.orders.OrderEntity;
-import com.hungerexpress.orders.OrderRepository;
 import com.hungerexpress.orders.OrderStatus;
-import com.hungerexpress.user.User;
 import com.hungerexpress.user.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -27,96 +23,48 @@ public class AgentEarningsController {
     
     private final UserRepository userRepo;
     private final AgentOrderRepository agentOrderRepo;
-    private final OrderRepository orderRepo;
     
     private static final BigDecimal BASE_DELIVERY_FEE = new BigDecimal("50.00");
     private static final BigDecimal PER_KM_RATE = new BigDecimal("10.00");
+    private static final BigDecimal AGENT_SHARE = new BigDecimal("0.80");
     
     // Get agent earnings summary (both root and /summary path for compatibility)
     @GetMapping(value = {"", "/summary"})
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<Map<String, Object>> getEarnings() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
+        Long agentId = CurrentUser.id();
+        if (agentId == null) return ResponseEntity.status(401).build();
         
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
-        
-        // Get all agent assignments
-        List<AgentOrderAssignment> assignments = agentOrderRepo.findByAgentId(user.getId());
-        
-        // Calculate total earnings
-        BigDecimal totalEarnings = BigDecimal.ZERO;
-        int totalDeliveries = 0;
-        
-        // Group by month
-        Map<String, MonthlyAgentEarnings> monthlyMap = new HashMap<>();
-        
-        for (AgentOrderAssignment assignment : assignments) {
-            OrderEntity order = orderRepo.findById(assignment.getOrderId()).orElse(null);
-            if (order == null || order.getStatus() != OrderStatus.DELIVERED) {
-                continue;
-            }
-            
-            totalDeliveries++;
-            
-            // Calculate earnings for this delivery
-            BigDecimal deliveryEarnings = calculateDeliveryEarnings(order);
-            totalEarnings = totalEarnings.add(deliveryEarnings);
-            
-            // Group by month
-            String monthYear = YearMonth.from(order.getDeliveredAt().atZone(ZoneId.systemDefault())).toString();
-            
-            MonthlyAgentEarnings monthly = monthlyMap.getOrDefault(monthYear, 
-                new MonthlyAgentEarnings(monthYear, 0, BigDecimal.ZERO));
-            
-            monthly.deliveries++;
-            monthly.earnings = monthly.earnings.add(deliveryEarnings);
-            
-            monthlyMap.put(monthYear, monthly);
-        }
-        
-        // Convert to list and sort
-        List<MonthlyAgentEarnings> monthlyList = new ArrayList<>(monthlyMap.values());
-        monthlyList.sort((a, b) -> b.month.compareTo(a.month));
-        
-        // Calculate today, week, month earnings
         Instant now = Instant.now();
-        Instant todayStart = now.atZone(ZoneId.systemDefault()).toLocalDate().atStartOfDay(ZoneId.systemDefault()).toInstant();
-        Instant weekStart = now.minus(7, java.time.temporal.ChronoUnit.DAYS);
-        Instant monthStart = now.minus(30, java.time.temporal.ChronoUnit.DAYS);
-        
-        BigDecimal todayEarnings = BigDecimal.ZERO;
-        BigDecimal weekEarnings = BigDecimal.ZERO;
-        BigDecimal monthEarnings = BigDecimal.ZERO;
-        
-        for (AgentOrderAssignment assignment : assignments) {
-            OrderEntity order = orderRepo.findById(assignment.getOrderId()).orElse(null);
-            if (order == null || order.getStatus() != OrderStatus.DELIVERED || order.getDeliveredAt() == null) continue;
-            
-            BigDecimal earning = calculateDeliveryEarnings(order);
-            
-            if (order.getDeliveredAt().isAfter(todayStart)) {
-                todayEarnings = todayEarnings.add(earning);
-            }
-            if (order.getDeliveredAt().isAfter(weekStart)) {
-                weekEarnings = weekEarnings.add(earning);
-            }
-            if (order.getDeliveredAt().isAfter(monthStart)) {
-                monthEarnings = monthEarnings.add(earning);
-            }
+        EarningsTally tally = new EarningsTally(now);
+        // One query for all assignments and their orders, one pass for every bucket
+        for (Object[] row : agentOrderRepo.findEarningRowsByAgentId(agentId)) {
+            if (row[2] != OrderStatus.DELIVERED) continue;
+            tally.add(calculateDeliveryEarnings((BigDecimal) row[3]), (Instant) row[4]);
         }
         
+        List<Map<String, Object>> monthlyList = tally.monthly.values().stream()
+            .sorted((a, b) -> b.month.compareTo(a.month))
+            .map(m -> {
+                Map<String, Object> month = new HashMap<>();
+                month.put("month", m.month);
+                month.put("deliveries", m.deliveries);
+                month.put("earnings", m.earnings.doubleValue());
+                return month;
+            })
+            .collect(Collectors.toList());
+        
         // Return format expected by frontend
         Map<String, Object> response = new HashMap<>();
-        response.put("totalEarnings", totalEarnings.doubleValue());
-        response.put("todayEarnings", todayEarnings.doubleValue());
-        response.put("weekEarnings", weekEarnings.doubleValue());
-        response.put("monthEarnings", monthEarnings.doubleValue());
-        response.put("totalDeliveries", totalDeliveries);
-        response.put("averagePerDelivery", totalDeliveries > 0 ? totalEarnings.divide(BigDecimal.valueOf(totalDeliveries), 2, java.math.RoundingMode.HALF_UP).doubleValue() : 0.0);
-        response.put("pendingPayout", totalEarnings.doubleValue()); // All earnings are pending for now
+        response.put("totalEarnings", tally.total.doubleValue());
+        response.put("todayEarnings", tally.today.doubleValue());
+        response.put("weekEarnings", tally.week.doubleValue());
+        response.put("monthEarnings", tally.month.doubleValue());
+        response.put("totalDeliveries", tally.deliveries);
+        response.put("averagePerDelivery", tally.deliveries > 0 ? tally.total.divide(BigDecimal.valueOf(tally.deliveries), 2, java.math.RoundingMode.HALF_UP).doubleValue() : 0.0);
+        response.put("pendingPayout", tally.total.doubleValue()); // All earnings are pending for now
         response.put("lastPayoutDate", now.minus(7, java.time.temporal.ChronoUnit.DAYS).toString());
+        response.put("monthlyBreakdown", monthlyList);
         
         return ResponseEntity.ok(response);
     }
@@ -125,36 +73,34 @@ public class AgentEarningsController {
     @GetMapping(value = {"/history", "/transactions"})
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<List<Map<String, Object>>> getDeliveryHistory() {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
+        Long agentId = CurrentUser.id();
+        if (agentId == null) return ResponseEntity.status(401).build();
         
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
+        // Assignments joined to their orders in one query (assignments whose order is gone drop out)
+        List<Object[]> rows = agentOrderRepo.findEarningRowsByAgentId(agentId);
         
-        List<AgentOrderAssignment> assignments = agentOrderRepo.findByAgentId(user.getId());
-        
-        List<Map<String, Object>> history = assignments.stream()
-            .map(assignment -> {
-                OrderEntity order = orderRepo.findById(assignment.getOrderId()).orElse(null);
-                if (order == null) return null;
+        List<Map<String, Object>> history = rows.stream()
+            .map(row -> {
+                Long orderId = (Long) row[0];
+                Instant assignedAt = (Instant) row[1];
+                boolean delivered = row[2] == OrderStatus.DELIVERED;
                 
-                BigDecimal earning = order.getStatus() == OrderStatus.DELIVERED 
-                    ? calculateDeliveryEarnings(order) 
+                BigDecimal earning = delivered 
+                    ? calculateDeliveryEarnings((BigDecimal) row[3]) 
                     : BigDecimal.ZERO;
                 
                 Map<String, Object> txn = new HashMap<>();
-                txn.put("id", assignment.getOrderId());
-                txn.put("orderNumber", "ORD-" + assignment.getOrderId());
-                txn.put("date", assignment.getAssignedAt() != null ? assignment.getAssignedAt().toString() : Instant.now().toString());
+                txn.put("id", orderId);
+                txn.put("orderNumber", "ORD-" + orderId);
+                txn.put("date", assignedAt != null ? assignedAt.toString() : Instant.now().toString());
                 txn.put("deliveryFee", earning.doubleValue());
                 txn.put("bonus", 0.0);
                 txn.put("total", earning.doubleValue());
                 txn.put("totalEarning", earning.doubleValue());
-                txn.put("status", order.getStatus() == OrderStatus.DELIVERED ? "COMPLETED" : "PENDING");
+                txn.put("status", delivered ? "COMPLETED" : "PENDING");
                 
                 return txn;
             })
-            .filter(Objects::nonNull)
             .sorted((a, b) -> {
                 String dateA = (String) a.get("date");
                 String dateB = (String) b.get("date");
@@ -172,31 +118,24 @@ public class AgentEarningsController {
     @GetMapping("/admin/all")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<AgentEarningsAdmin>> getAllAgentEarnings() {
-        List<User> agents = userRepo.findAll().stream()
-            .filter(u -> "AGENT".equals(u.getRole()))
-            .collect(Collectors.toList());
+        // One grouped query across all agents instead of a lookup per assignment
+        Map<Long, Object[]> delivered = new HashMap<>();
+        for (Object[] row : agentOrderRepo.sumDeliveredFeesByAgent(BASE_DELIVERY_FEE)) {
+            delivered.put((Long) row[0], row);
+        }
         
-        List<AgentEarningsAdmin> result = agents.stream()
+        List<AgentEarningsAdmin> result = userRepo.findByRole("AGENT").stream()
             .map(agent -> {
-                List<AgentOrderAssignment> assignments = agentOrderRepo.findByAgentId(agent.getId());
-                
-                BigDecimal totalEarnings = BigDecimal.ZERO;
-                int deliveries = 0;
-                
-                for (AgentOrderAssignment assignment : assignments) {
-                    OrderEntity order = orderRepo.findById(assignment.getOrderId()).orElse(null);
-                    if (order != null && order.getStatus() == OrderStatus.DELIVERED) {
-                        totalEarnings = totalEarnings.add(calculateDeliveryEarnings(order));
-                        deliveries++;
-                    }
-                }
+                Object[] row = delivered.get(agent.getId());
+                int deliveries = row != null ? ((Number) row[1]).intValue() : 0;
+                BigDecimal fees = row != null && row[2] != null ? (BigDecimal) row[2] : BigDecimal.ZERO;
                 
                 return new AgentEarningsAdmin(
                     agent.getId(),
                     agent.getFullName(),
                     agent.getEmail(),
                     deliveries,
-                    totalEarnings
+                    fees.multiply(AGENT_SHARE)
                 );
             })
             .sorted((a, b) -> b.totalEarnings.compareTo(a.totalEarnings))
@@ -206,16 +145,48 @@ public class AgentEarningsController {
     }
     
     // Helper: Calculate delivery earnings
-    private BigDecimal calculateDeliveryEarnings(OrderEntity order) {
+    private BigDecimal calculateDeliveryEarnings(BigDecimal deliveryFee) {
         // Base formula: Base fee + distance-based rate
         // For now, use delivery fee from order or default
-        BigDecimal deliveryFee = order.getDeliveryFee();
         if (deliveryFee == null || deliveryFee.compareTo(BigDecimal.ZERO) == 0) {
             deliveryFee = BASE_DELIVERY_FEE;
         }
         
         // Agent gets 80% of delivery fee
-        return deliveryFee.multiply(new BigDecimal("0.80"));
+        return deliveryFee.multiply(AGENT_SHARE);
+    }
+    
+    // Single-pass accumulator for the summary: lifetime total, rolling windows and calendar months
+    static class EarningsTally {
+        final Instant todayStart;
+        final Instant weekStart;
+        final Instant monthStart;
+        BigDecimal total = BigDecimal.ZERO;
+        BigDecimal today = BigDecimal.ZERO;
+        BigDecimal week = BigDecimal.ZERO;
+        BigDecimal month = BigDecimal.ZERO;
+        int deliveries = 0;
+        final Map<String, MonthlyAgentEarnings> monthly = new HashMap<>();
+        
+        EarningsTally(Instant now) {
+            this.todayStart = now.atZone(ZoneId.systemDefault()).toLocalDate().atStartOfDay(ZoneId.systemDefault()).toInstant();
+            this.weekStart = now.minus(7, java.time.temporal.ChronoUnit.DAYS);
+            this.monthStart = now.minus(30, java.time.temporal.ChronoUnit.DAYS);
+        }
+        
+        void add(BigDecimal earning, Instant deliveredAt) {
+            deliveries++;
+            total = total.add(earning);
+            if (deliveredAt == null) return;
+            if (deliveredAt.isAfter(todayStart)) today = today.add(earning);
+            if (deliveredAt.isAfter(weekStart)) week = week.add(earning);
+            if (deliveredAt.isAfter(monthStart)) month = month.add(earning);
+            
+            String monthYear = YearMonth.from(deliveredAt.atZone(ZoneId.systemDefault())).toString();
+            MonthlyAgentEarnings m = monthly.computeIfAbsent(monthYear, k -> new MonthlyAgentEarnings(k, 0, BigDecimal.ZERO));
+            m.deliveries++;
+            m.earnings = m.earnings.add(earning);
+        }
     }
     
     // DTOs
@@ -9,7 +9,8 @@ import java.time.YearMonth;
 
 @Entity
 @Table(name = "revenue", 
-       uniqueConstraints = @UniqueConstraint(columnNames = {"owner_id", "restaurant_id", "month_year"}))
+       uniqueConstraints = @UniqueConstraint(columnNames = {"owner_id", "restaurant_id", "month_year"}),
+       indexes = @Index(name = "idx_revenue_restaurant_month", columnList = "restaurant_id, month_year"))
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class RevenueEntity {
     
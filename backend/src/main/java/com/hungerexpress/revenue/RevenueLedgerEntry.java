@@ -0,0 +1,49 @@
+package com.hungerexpress.revenue;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One row per order that has been counted into {@link RevenueEntity}. The unique order id is the
+ * idempotency key: a delivered order is posted at most once, and a reversal (cancel/refund) only
+ * subtracts what was actually posted.
+ */
+@Entity
+@Table(name = "revenue_ledger",
+       uniqueConstraints = @UniqueConstraint(name = "uk_revenue_ledger_order", columnNames = {"order_id"}))
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class RevenueLedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "restaurant_id", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "month_year", nullable = false, length = 7)
+    private String monthYear;
+
+    @Column(name = "amount", nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "reversed", nullable = false)
+    @Builder.Default
+    private boolean reversed = false;
+
+    @Column(name = "posted_at", nullable = false)
+    @Builder.Default
+    private Instant postedAt = Instant.now();
+
+    @Column(name = "reversed_at")
+    private Instant reversedAt;
+}
@@ -0,0 +1,23 @@
+package com.hungerexpress.revenue;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface RevenueLedgerRepository extends JpaRepository<RevenueLedgerEntry, Long> {
+
+    Optional<RevenueLedgerEntry> findByOrderId(Long orderId);
+
+    // Conditional flips: exactly one caller gets 1 back, so a posting is applied or undone only once
+    @Modifying
+    @Query("UPDATE RevenueLedgerEntry e SET e.reversed = true, e.reversedAt = :now WHERE e.orderId = :orderId AND e.reversed = false")
+    int markReversed(@Param("orderId") Long orderId, @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE RevenueLedgerEntry e SET e.reversed = false, e.reversedAt = null, e.postedAt = :now WHERE e.orderId = :orderId AND e.reversed = true")
+    int markReposted(@Param("orderId") Long orderId, @Param("now") Instant now);
+}
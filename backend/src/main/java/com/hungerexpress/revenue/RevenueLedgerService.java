@@ -0,0 +1,227 @@
+package com.hungerexpress.revenue;
+
+import com.hungerexpress.orders.OrderLifecycleEvent;
+import com.hungerexpress.orders.OrderRepository;
+import com.hungerexpress.orders.OrderStatus;
+import com.hungerexpress.payments.PaymentRepository;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the monthly {@link RevenueEntity} rows incrementally. An order is posted once when it
+ * reaches DELIVERED and reversed when it leaves DELIVERED or is refunded; {@link RevenueLedgerEntry}
+ * records what was posted so replays and duplicate events are no-ops.
+ * Revenue is bucketed by the month the order was placed, as the old on-read recalculation did.
+ */
+@Service
+@Slf4j
+public class RevenueLedgerService {
+
+    static final BigDecimal PLATFORM_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15%
+    private static final int RECOMPUTE_CHUNK = 5000;
+
+    private final RevenueRepository revenue;
+    private final RevenueLedgerRepository ledger;
+    private final OrderRepository orders;
+    private final RestaurantRepository restaurants;
+    private final PaymentRepository payments;
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+
+    public RevenueLedgerService(RevenueRepository revenue, RevenueLedgerRepository ledger, OrderRepository orders,
+                                RestaurantRepository restaurants, PaymentRepository payments, EntityManager em,
+                                PlatformTransactionManager txManager) {
+        this.revenue = revenue;
+        this.ledger = ledger;
+        this.orders = orders;
+        this.restaurants = restaurants;
+        this.payments = payments;
+        this.em = em;
+        this.tx = new TransactionTemplate(txManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // After the order's own transaction commits (or immediately when there is none)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderLifecycle(OrderLifecycleEvent e) {
+        try {
+            if (e.entered(OrderStatus.DELIVERED)) {
+                post(e);
+            } else if (e.left(OrderStatus.DELIVERED)) {
+                reverse(e.orderId());
+            }
+        } catch (Exception ex) {
+            log.error("Failed to update revenue ledger for order {}: {}", e.orderId(), ex.getMessage(), ex);
+        }
+    }
+
+    private void post(OrderLifecycleEvent e) {
+        if (e.restaurantId() == null) return;
+        Long ownerId = restaurants.findById(e.restaurantId()).map(Restaurant::getOwnerId).orElse(null);
+        if (ownerId == null) {
+            log.warn("Order {} delivered for unknown restaurant {}; not posted to revenue", e.orderId(), e.restaurantId());
+            return;
+        }
+        RevenueLedgerEntry entry = RevenueLedgerEntry.builder()
+                .orderId(e.orderId())
+                .ownerId(ownerId)
+                .restaurantId(e.restaurantId())
+                .monthYear(monthOf(e.createdAt()))
+                .amount(nz(e.total()))
+                .build();
+        try {
+            tx.executeWithoutResult(s -> postOnce(entry));
+        } catch (DataIntegrityViolationException raced) {
+            // either the ledger row or the month row was inserted concurrently; the retry sees it
+            tx.executeWithoutResult(s -> postOnce(entry));
+        }
+    }
+
+    private void postOnce(RevenueLedgerEntry entry) {
+        Instant now = Instant.now();
+        Optional<RevenueLedgerEntry> existing = ledger.findByOrderId(entry.getOrderId());
+        if (existing.isPresent()) {
+            // already counted, unless an earlier reversal is being undone
+            if (ledger.markReposted(entry.getOrderId(), now) == 0) return;
+            RevenueLedgerEntry prev = existing.get();
+            applyDelta(prev.getOwnerId(), prev.getRestaurantId(), prev.getMonthYear(), 1, prev.getAmount(), now);
+            return;
+        }
+        ledger.saveAndFlush(entry);
+        applyDelta(entry.getOwnerId(), entry.getRestaurantId(), entry.getMonthYear(), 1, entry.getAmount(), now);
+    }
+
+    /**
+     * Subtracts a previously posted order from its month. Safe to call repeatedly, and for orders
+     * that were never posted (refund before delivery, orders without a restaurant).
+     */
+    public void reverse(Long orderId) {
+        tx.executeWithoutResult(s -> {
+            Instant now = Instant.now();
+            if (ledger.markReversed(orderId, now) == 0) return;
+            ledger.findByOrderId(orderId).ifPresent(prev ->
+                    applyDelta(prev.getOwnerId(), prev.getRestaurantId(), prev.getMonthYear(), -1, prev.getAmount().negate(), now));
+        });
+    }
+
+    private void applyDelta(Long ownerId, Long restaurantId, String monthYear, int orderDelta, BigDecimal amount, Instant now) {
+        BigDecimal fee = platformFee(amount);
+        BigDecimal net = amount.subtract(fee);
+        int updated = revenue.increment(ownerId, restaurantId, monthYear, orderDelta, amount, fee, net, now);
+        if (updated == 0) {
+            revenue.saveAndFlush(RevenueEntity.builder()
+                    .ownerId(ownerId)
+                    .restaurantId(restaurantId)
+                    .monthYear(monthYear)
+                    .totalOrders(orderDelta)
+                    .totalRevenue(amount)
+                    .platformFee(fee)
+                    .netEarnings(net)
+                    .lastUpdated(now)
+                    .build());
+        }
+    }
+
+    // Revenue rows written by the old on-read recalculation have no ledger behind them; rebuild once
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (ledger.count() == 0 && orders.count() > 0) {
+            recompute();
+        }
+    }
+
+    /**
+     * Rebuilds the ledger and every monthly revenue row from delivered orders, scanning the orders
+     * table in id-ordered chunks of projected columns. Refunded orders are excluded.
+     * The whole rebuild is one transaction: owners keep seeing the old rows until the new ones
+     * commit, and a failure part way leaves the old ledger and revenue in place (an empty ledger is
+     * then rebuilt again at the next start). Postings arriving meanwhile wait on its locks, so
+     * trigger it when order traffic is quiet.
+     */
+    public Map<String, Object> recompute() {
+        return tx.execute(s -> rebuild());
+    }
+
+    private Map<String, Object> rebuild() {
+        Map<Long, Long> ownerByRestaurant = restaurants.findAll().stream()
+                .filter(r -> r.getOwnerId() != null)
+                .collect(Collectors.toMap(Restaurant::getId, Restaurant::getOwnerId));
+        Set<Long> refunded = new HashSet<>(payments.findOrderIdsByStatus("REFUNDED"));
+
+        ledger.deleteAllInBatch();
+        revenue.deleteAllInBatch();
+
+        Map<String, RevenueEntity> months = new HashMap<>();
+        Instant now = Instant.now();
+        long afterId = 0L;
+        long posted = 0;
+        while (true) {
+            List<Object[]> rows = orders.findDeliveredRevenueRowsAfter(afterId, PageRequest.of(0, RECOMPUTE_CHUNK));
+            if (rows.isEmpty()) break;
+            List<RevenueLedgerEntry> chunk = new ArrayList<>(rows.size());
+            for (Object[] r : rows) {
+                Long orderId = (Long) r[0];
+                Long restaurantId = (Long) r[1];
+                Long ownerId = ownerByRestaurant.get(restaurantId);
+                if (ownerId == null || refunded.contains(orderId)) continue;
+                String month = monthOf((Instant) r[2]);
+                BigDecimal amount = nz((BigDecimal) r[3]);
+                chunk.add(RevenueLedgerEntry.builder()
+                        .orderId(orderId).ownerId(ownerId).restaurantId(restaurantId)
+                        .monthYear(month).amount(amount).postedAt(now)
+                        .build());
+                RevenueEntity m = months.computeIfAbsent(ownerId + ":" + restaurantId + ":" + month, k -> RevenueEntity.builder()
+                        .ownerId(ownerId).restaurantId(restaurantId).monthYear(month).build());
+                m.setTotalOrders(m.getTotalOrders() + 1);
+                m.setTotalRevenue(m.getTotalRevenue().add(amount));
+                // per-order fees, summed, so the totals match what incremental posting produces
+                BigDecimal fee = platformFee(amount);
+                m.setPlatformFee(m.getPlatformFee().add(fee));
+                m.setNetEarnings(m.getNetEarnings().add(amount.subtract(fee)));
+                m.setLastUpdated(now);
+            }
+            ledger.saveAll(chunk);
+            // Written; keep the persistence context from growing with every chunk
+            ledger.flush();
+            em.clear();
+            posted += chunk.size();
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+
+        List<RevenueEntity> rebuilt = new ArrayList<>(months.values());
+        revenue.saveAll(rebuilt);
+        log.info("Recomputed revenue: {} monthly rows from {} delivered orders", rebuilt.size(), posted);
+        return Map.of("months", rebuilt.size(), "orders", posted);
+    }
+
+    static String monthOf(Instant at) {
+        return YearMonth.from((at != null ? at : Instant.now()).atZone(ZoneId.systemDefault())).toString();
+    }
+
+    private static BigDecimal platformFee(BigDecimal amount) {
+        return amount.multiply(PLATFORM_FEE_PERCENTAGE).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v != null ? v : BigDecimal.ZERO;
+    }
+}
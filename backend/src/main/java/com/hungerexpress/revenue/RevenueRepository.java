@@ -1,9 +1,12 @@
 package com.hungerexpress.revenue;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +26,13 @@ public interface RevenueRepository extends JpaRepository<RevenueEntity, Long> {
     
     @Query("SELECT SUM(r.netEarnings) FROM RevenueEntity r WHERE r.ownerId = :ownerId")
     java.math.BigDecimal getTotalNetEarningsByOwnerId(@Param("ownerId") Long ownerId);
+    
+    // Atomic in-place increment (negative values reverse); returns 0 when the month row doesn't exist yet
+    @Modifying
+    @Query("UPDATE RevenueEntity r SET r.totalOrders = r.totalOrders + :orders, r.totalRevenue = r.totalRevenue + :revenue, " +
+           "r.platformFee = r.platformFee + :fee, r.netEarnings = r.netEarnings + :net, r.lastUpdated = :now " +
+           "WHERE r.ownerId = :ownerId AND r.restaurantId = :restaurantId AND r.monthYear = :monthYear")
+    int increment(@Param("ownerId") Long ownerId, @Param("restaurantId") Long restaurantId, @Param("monthYear") String monthYear,
+                  @Param("orders") int orders, @Param("revenue") BigDecimal revenue, @Param("fee") BigDecimal fee,
+                  @Param("net") BigDecimal net, @Param("now") Instant now);
 }
@@ -8,7 +8,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/reviews")
@@ -18,9 +17,10 @@ public class ReviewsController {
     private final UserRepository users;
 
     private Long currentUserId(){
-        String email = Optional.ofNullable(CurrentUser.email()).orElse(null);
-        if (email == null) return null;
-        return users.findByEmail(email).map(User::getId).orElse(null);
+        Long id = CurrentUser.id();
+        if (id != null) return id;
+        if (CurrentUser.principal() == null) return null;
+        return users.findByEmail(CurrentUser.email()).map(User::getId).orElse(null);
     }
 
     @GetMapping("/menu/{menuItemId}")
@@ -0,0 +1,319 @@
+package com.hungerexpress.search;
+
+import com.hungerexpress.menu.MenuItemRepository;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import com.hungerexpress.restaurant.Cuisine;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over restaurants and their approved dish names.
+ * Each term maps to the restaurants containing it, weighted by the best field it appeared in
+ * (name > tags/specialty > city/dishes > description). Prefixes of up to three characters have
+ * their own postings, so short queries are one lookup; longer prefixes walk a sorted term
+ * dictionary, and a trigram index over terms finds near-miss spellings. Every query token must match
+ * (exactly, by prefix, or within a small edit distance); results rank by relevance x (1 + rating).
+ * Built once at startup and re-indexed per restaurant on {@link CatalogChangedEvent}.
+ */
+@Component
+@Slf4j
+public class CatalogSearchIndex {
+
+    static final float NAME = 3.0f;
+    static final float TAGS = 2.0f;
+    static final float CITY = 1.5f;
+    static final float DISH = 1.5f;
+    static final float DESCRIPTION = 1.0f;
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.7f;
+    private static final float FUZZY = 0.4f;
+    private static final int SHORT_PREFIX = 3;
+    private static final int BUILD_CHUNK = 5000;
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{Alnum}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final RestaurantRepository restaurants;
+    private final MenuItemRepository items;
+
+    private record Doc(Restaurant restaurant, Map<String, Float> terms, Map<String, Float> prefixes) {}
+
+    private final Map<Long, Doc> docs = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Map<Long, Float>> postings = new ConcurrentSkipListMap<>();
+    // Restaurants with a term starting with each 1-3 character prefix, at that term's best weight
+    private final Map<String, Map<Long, Float>> shortPrefixes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+    private volatile boolean ready = false;
+
+    public CatalogSearchIndex(RestaurantRepository restaurants, MenuItemRepository items) {
+        this.restaurants = restaurants;
+        this.items = items;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        Map<Long, List<String>> dishes = new HashMap<>();
+        long afterId = 0L;
+        long dishCount = 0;
+        while (true) {
+            List<Object[]> rows = items.findApprovedNamesAfter(afterId, PageRequest.of(0, BUILD_CHUNK));
+            if (rows.isEmpty()) break;
+            for (Object[] r : rows) {
+                dishes.computeIfAbsent((Long) r[1], k -> new ArrayList<>()).add((String) r[2]);
+            }
+            dishCount += rows.size();
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        List<Restaurant> all = restaurants.findAll();
+        for (Restaurant r : all) {
+            put(r, dishes.getOrDefault(r.getId(), List.of()));
+        }
+        ready = true;
+        log.info("Catalog search index built: {} restaurants, {} dishes, {} terms", all.size(), dishCount, postings.size());
+    }
+
+    // After the catalog edit commits, so the reload sees it; ordered ahead of the list cache's
+    // listener so a search re-cached right after invalidation already sees the new index
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void onCatalogChanged(CatalogChangedEvent e) {
+        if (!ready || e.restaurantId() == null) return;
+        try {
+            reindex(e.restaurantId());
+        } catch (Exception ex) {
+            log.error("Failed to re-index restaurant {}: {}", e.restaurantId(), ex.getMessage(), ex);
+        }
+    }
+
+    public void reindex(Long restaurantId) {
+        Optional<Restaurant> r = restaurants.findById(restaurantId);
+        if (r.isEmpty()) {
+            remove(restaurantId);
+            return;
+        }
+        put(r.get(), items.findApprovedNamesByRestaurantId(restaurantId));
+    }
+
+    /**
+     * Approved, active restaurants matching every token of {@code query}, best first.
+     * Single characters are only searched when the query has nothing longer; they match every
+     * indexed word starting with that character (the old SQL search matched them anywhere in a word).
+     * Returns an empty list when the query has no searchable tokens.
+     */
+    public List<Restaurant> search(String query, Cuisine cuisine, Double minRating) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty()) tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query, 1)));
+        if (tokens.isEmpty()) return List.of();
+
+        Map<Long, Float> scores = null;
+        for (String token : tokens) {
+            Map<Long, Float> hits = match(token);
+            if (scores == null) {
+                scores = hits;
+            } else {
+                Map<Long, Float> next = new HashMap<>();
+                for (Map.Entry<Long, Float> e : scores.entrySet()) {
+                    Float s = hits.get(e.getKey());
+                    if (s != null) next.put(e.getKey(), e.getValue() + s);
+                }
+                scores = next;
+            }
+            if (scores.isEmpty()) return List.of();
+        }
+
+        List<Map.Entry<Restaurant, Float>> ranked = new ArrayList<>();
+        for (Map.Entry<Long, Float> e : scores.entrySet()) {
+            Doc d = docs.get(e.getKey());
+            if (d == null) continue;
+            Restaurant r = d.restaurant();
+            if (!Boolean.TRUE.equals(r.getApproved()) || !Boolean.TRUE.equals(r.getActive())) continue;
+            if (cuisine != null && cuisine != r.getCuisine()) continue;
+            double rating = r.getRating() != null ? r.getRating() : 0.0;
+            if (minRating != null && rating < minRating) continue;
+            ranked.add(Map.entry(r, (float) (e.getValue() * (1.0 + rating))));
+        }
+        ranked.sort(Map.Entry.<Restaurant, Float>comparingByValue().reversed()
+                .thenComparing(e -> e.getKey().getId()));
+        return ranked.stream().map(Map.Entry::getKey).toList();
+    }
+
+    public int size() {
+        return docs.size();
+    }
+
+    // Best score per restaurant for one query token: exact term, else prefix expansions, else typo matches
+    private Map<Long, Float> match(String token) {
+        Map<Long, Float> hits = new HashMap<>();
+        Map<Long, Float> exact = postings.get(token);
+        if (exact != null) accumulate(hits, exact, EXACT);
+
+        if (token.length() <= SHORT_PREFIX) {
+            Map<Long, Float> p = shortPrefixes.get(token);
+            if (p != null) accumulate(hits, p, PREFIX);
+        } else {
+            // Four or more characters narrow the dictionary to a handful of terms
+            for (Map<Long, Float> p : postings.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                accumulate(hits, p, PREFIX);
+            }
+        }
+
+        if (hits.isEmpty() && token.length() >= 4) {
+            int maxEdits = token.length() >= 7 ? 2 : 1;
+            for (String term : fuzzyCandidates(token)) {
+                if (Math.abs(term.length() - token.length()) > maxEdits) continue;
+                if (editDistance(token, term, maxEdits) <= maxEdits) {
+                    Map<Long, Float> p = postings.get(term);
+                    if (p != null) accumulate(hits, p, FUZZY);
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static void accumulate(Map<Long, Float> into, Map<Long, Float> posting, float factor) {
+        posting.forEach((id, weight) -> into.merge(id, weight * factor, Math::max));
+    }
+
+    // Terms sharing at least a third of the token's trigrams
+    private Set<String> fuzzyCandidates(String token) {
+        Set<String> grams = trigramsOf(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String g : grams) {
+            Set<String> terms = trigrams.get(g);
+            if (terms != null) terms.forEach(t -> shared.merge(t, 1, Integer::sum));
+        }
+        int needed = Math.max(1, grams.size() / 3);
+        Set<String> out = new HashSet<>();
+        shared.forEach((t, n) -> { if (n >= needed) out.add(t); });
+        return out;
+    }
+
+    private synchronized void put(Restaurant r, Collection<String> dishNames) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, r.getName(), NAME);
+        addField(terms, r.getTags(), TAGS);
+        addField(terms, r.getSpecialty(), TAGS);
+        addField(terms, r.getCity(), CITY);
+        addField(terms, r.getDescription(), DESCRIPTION);
+        for (String dish : dishNames) addField(terms, dish, DISH);
+
+        Map<String, Float> prefixes = prefixesOf(terms);
+        Doc old = docs.put(r.getId(), new Doc(r, terms, prefixes));
+        if (old != null) {
+            for (String term : old.terms().keySet()) {
+                if (!terms.containsKey(term)) unpost(term, r.getId());
+            }
+            for (String prefix : old.prefixes().keySet()) {
+                if (!prefixes.containsKey(prefix)) unpostPrefix(prefix, r.getId());
+            }
+        }
+        prefixes.forEach((prefix, weight) ->
+                shortPrefixes.computeIfAbsent(prefix, k -> new ConcurrentHashMap<>()).put(r.getId(), weight));
+        terms.forEach((term, weight) -> {
+            Map<Long, Float> p = postings.computeIfAbsent(term, t -> {
+                for (String g : trigramsOf(t)) trigrams.computeIfAbsent(g, k -> ConcurrentHashMap.newKeySet()).add(t);
+                return new ConcurrentHashMap<>();
+            });
+            p.put(r.getId(), weight);
+        });
+    }
+
+    private synchronized void remove(Long restaurantId) {
+        Doc old = docs.remove(restaurantId);
+        if (old == null) return;
+        old.terms().keySet().forEach(term -> unpost(term, restaurantId));
+        old.prefixes().keySet().forEach(prefix -> unpostPrefix(prefix, restaurantId));
+    }
+
+    private void unpostPrefix(String prefix, Long restaurantId) {
+        Map<Long, Float> p = shortPrefixes.get(prefix);
+        if (p == null) return;
+        p.remove(restaurantId);
+        if (p.isEmpty()) shortPrefixes.remove(prefix, p);
+    }
+
+    private static Map<String, Float> prefixesOf(Map<String, Float> terms) {
+        Map<String, Float> out = new HashMap<>();
+        terms.forEach((term, weight) -> {
+            for (int n = 1; n <= Math.min(SHORT_PREFIX, term.length()); n++) out.merge(term.substring(0, n), weight, Math::max);
+        });
+        return out;
+    }
+
+    private void unpost(String term, Long restaurantId) {
+        Map<Long, Float> p = postings.get(term);
+        if (p == null) return;
+        p.remove(restaurantId);
+        if (p.isEmpty()) {
+            postings.remove(term, p);
+            for (String g : trigramsOf(term)) {
+                Set<String> ts = trigrams.get(g);
+                if (ts == null) continue;
+                ts.remove(term);
+                if (ts.isEmpty()) trigrams.remove(g, ts);
+            }
+        }
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String t : tokenize(text)) terms.merge(t, weight, Math::max);
+    }
+
+    static List<String> tokenize(String text) {
+        return tokenize(text, 2);
+    }
+
+    static List<String> tokenize(String text, int minLength) {
+        if (text == null || text.isBlank()) return List.of();
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        for (String t : SPLIT.split(folded)) {
+            if (t.length() >= minLength) out.add(t);
+        }
+        return out;
+    }
+
+    private static Set<String> trigramsOf(String term) {
+        String padded = "^" + term + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) grams.add(padded.substring(i, i + 3));
+        return grams;
+    }
+
+    // Levenshtein distance with an early exit once every cell in a row exceeds max
+    static int editDistance(String a, String b, int max) {
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] tmp = prev; prev = cur; cur = tmp;
+        }
+        return prev[b.length()];
+    }
+}
@@ -1,14 +1,11 @@
 package com.hungerexpress.security;
 
-import com.hungerexpress.auth.JwtService;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import com.hungerexpress.auth.JwtClaims;
+import com.hungerexpress.common.AuthUser;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -17,18 +14,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.security.Key;
 import java.util.Collections;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final JwtService jwt;
-    
-    @Value("${app.jwt.secret}")
-    private String secret;
+    private final VerifiedTokenCache tokens;
 
-    public JwtAuthFilter(JwtService jwt) { this.jwt = jwt; }
+    public JwtAuthFilter(VerifiedTokenCache tokens) { this.tokens = tokens; }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -51,11 +44,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         // But we should still process JWT if present to link orders to logged-in users
         // So we DON'T skip JWT processing here - we continue to extract token below
         
-        // Skip JWT for cart endpoints (allow guest carts)
-        if (path != null && path.startsWith("/api/cart")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
+        // NOTE: Cart endpoints are public too (guest carts), but a present token must still
+        // resolve the caller so logged-in users get their own server-side cart
         
         // Skip JWT for payment webhooks
         if (path != null && path.equals("/api/payments/webhook")) {
@@ -79,19 +69,16 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         
         if (token != null) {
             try {
-                System.out.println("[JwtAuthFilter] Processing JWT token for: " + path);
-                String email = jwt.extractUsername(token);
-                Key signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
-                Claims claims = io.jsonwebtoken.Jwts.parserBuilder()
-                        .setSigningKey(signingKey)
-                        .build().parseClaimsJws(token).getBody();
-                String role = claims.get("role", String.class);
+                // Single signature check (or a cache hit) yields subject, role and uid together
+                JwtClaims claims = tokens.verify(token);
+                String email = claims.subject();
+                String role = claims.role();
                 if (role == null || role.isBlank()) role = "CUSTOMER";
                 String authority = role.startsWith("ROLE_") ? role : ("ROLE_" + role);
-                var authToken = new UsernamePasswordAuthenticationToken(email, null,
+                var principal = new AuthUser(claims.uid(), email, role);
+                var authToken = new UsernamePasswordAuthenticationToken(principal, null,
                         Collections.singletonList(new SimpleGrantedAuthority(authority)));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-                System.out.println("[JwtAuthFilter] ✅ Authenticated user: " + email + " with role: " + authority);
             } catch (Exception e){
                 // Log the error for debugging
                 System.err.println("[JwtAuthFilter] ❌ Failed to parse token: " + e.getMessage());
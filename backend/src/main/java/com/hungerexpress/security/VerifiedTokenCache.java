@@ -0,0 +1,101 @@
+package com.hungerexpress.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hungerexpress.auth.JwtClaims;
+import com.hungerexpress.auth.JwtService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Bounded cache of already-verified access tokens, keyed by the SHA-256 digest of the raw token
+ * so the token itself is never held as a key. Entries live for at most {@code app.jwt.cache.ttl-ms}
+ * and never past the token's own expiry, so a cached hit is always as valid as a fresh parse.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final JwtService jwt;
+    private final boolean enabled;
+    private final long maxTtlNanos;
+    private final Cache<String, JwtClaims> cache;
+
+    public VerifiedTokenCache(JwtService jwt,
+                              @Value("${app.jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${app.jwt.cache.max-size:10000}") long maxSize,
+                              @Value("${app.jwt.cache.ttl-ms:300000}") long ttlMs) {
+        this.jwt = jwt;
+        this.enabled = enabled;
+        this.maxTtlNanos = Duration.ofMillis(ttlMs).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, JwtClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, JwtClaims claims, long currentTime) {
+                        return ttlFor(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, JwtClaims claims, long currentTime, long currentDuration) {
+                        return ttlFor(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, JwtClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the verified claims for the token, parsing and checking the signature only on a miss.
+     * Throws a {@link io.jsonwebtoken.JwtException} for invalid tokens; failures are never cached.
+     */
+    public JwtClaims verify(String token) {
+        if (!enabled) return jwt.parse(token);
+        String key = digest(token);
+        JwtClaims cached = cache.getIfPresent(key);
+        if (cached != null && !cached.isExpired(Instant.now())) return cached;
+        JwtClaims claims = jwt.parse(token);
+        cache.put(key, claims);
+        return claims;
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(digest(token));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private long ttlFor(JwtClaims claims) {
+        if (claims.expiresAt() == null) return maxTtlNanos;
+        long untilExpiry = Duration.between(Instant.now(), claims.expiresAt()).toNanos();
+        return Math.max(0L, Math.min(maxTtlNanos, untilExpiry));
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
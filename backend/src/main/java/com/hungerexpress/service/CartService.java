@@ -1,156 +1,207 @@
 package com.hungerexpress.service;
 
+import com.hungerexpress.cart.CartKey;
+import com.hungerexpress.cart.CartStore;
 import com.hungerexpress.dto.CartDTO;
 import com.hungerexpress.dto.CartItemDTO;
-import com.hungerexpress.model.Cart;
 import com.hungerexpress.menu.MenuItem;
 import com.hungerexpress.menu.MenuItemRepository;
-import com.hungerexpress.user.User;
-import com.hungerexpress.repository.CartRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Cart operations over {@link CartStore}. Reads and totals come from the in-memory cart;
+ * only adding an item that isn't in the cart yet reads its menu item.
+ * Item ids in requests and responses are menu item ids.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CartService {
-    
-    private final CartRepository cartRepository;
+
+    static final double DELIVERY_FEE = 50.0; // Fixed delivery fee in INR
+    static final double TAX_RATE = 0.05;     // 5% GST
+    static final int MAX_OPS = 200;
+
+    private final CartStore carts;
     private final MenuItemRepository menuItemRepository;
-    
+
     /**
-     * Get all cart items for user
+     * Get all cart items for user, newest first
      */
-    @Transactional(readOnly = true)
-    public CartDTO getCart(User user) {
-        List<Cart> cartItems = cartRepository.findByUserOrderByCreatedAtDesc(user);
-        
-        List<CartItemDTO> items = cartItems.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        
-        Double total = cartRepository.calculateCartTotal(user);
-        long itemCount = cartRepository.countByUser(user);
-        
-        return CartDTO.builder()
-                .items(items)
-                .totalItems((int) itemCount)
-                .subtotal(total != null ? total : 0.0)
-                .deliveryFee(50.0) // Fixed delivery fee in INR
-                .tax(total != null ? total * 0.05 : 0.0) // 5% GST
-                .total(total != null ? total + 50.0 + (total * 0.05) : 50.0)
-                .build();
+    public CartDTO getCart(CartKey key) {
+        return toDTO(carts.get(key));
     }
-    
+
     /**
      * Add item to cart
      */
-    @Transactional
-    public CartItemDTO addToCart(User user, Long menuItemId, Integer quantity) {
-        MenuItem menuItem = menuItemRepository.findById(menuItemId)
-                .orElseThrow(() -> new RuntimeException("Menu item not found"));
-        
-        // Check if item already in cart
-        Cart cart = cartRepository.findByUserAndMenuItemId(user, menuItemId)
-                .orElse(null);
-        
-        if (cart != null) {
-            // Update quantity
-            cart.setQuantity(cart.getQuantity() + quantity);
-            cart = cartRepository.save(cart);
-            log.info("Updated cart item: {} quantity to {}", menuItem.getName(), cart.getQuantity());
-        } else {
-            // Create new cart item
-            cart = new Cart();
-            cart.setUser(user);
-            cart.setMenuItem(menuItem);
-            cart.setQuantity(quantity);
-            cart.setPrice(menuItem.getPrice().doubleValue());
-            cart = cartRepository.save(cart);
-            log.info("Added {} to cart for user {}", menuItem.getName(), user.getEmail());
-        }
-        
-        return convertToDTO(cart);
+    public CartItemDTO addToCart(CartKey key, Long menuItemId, Integer quantity) {
+        int qty = quantity != null ? Math.max(1, quantity) : 1;
+        // Only an item new to this cart needs its name, restaurant and price
+        MenuItem menuItem = carts.get(key).lines().stream().anyMatch(l -> l.menuItemId().equals(menuItemId))
+                ? null
+                : menuItemRepository.findById(menuItemId).orElseThrow(() -> new RuntimeException("Menu item not found"));
+
+        CartStore.Snapshot cart = carts.update(key, lines -> {
+            CartStore.Line cur = lines.get(menuItemId);
+            if (cur != null) {
+                lines.put(menuItemId, cur.withQty(cur.qty() + qty));
+            } else if (menuItem != null) {
+                lines.put(menuItemId, CartStore.Line.of(menuItem, qty));
+            } else {
+                // Removed concurrently after we skipped the lookup
+                MenuItem m = menuItemRepository.findById(menuItemId).orElseThrow(() -> new RuntimeException("Menu item not found"));
+                lines.put(menuItemId, CartStore.Line.of(m, qty));
+            }
+        });
+        CartStore.Line line = find(cart, menuItemId);
+        log.info("Cart of {}: {} x{}", key, line.name(), line.qty());
+        return toDTO(line);
     }
-    
+
     /**
-     * Update cart item quantity
+     * Update cart item quantity; a quantity of 0 or less removes the item and returns null
      */
-    @Transactional
-    public CartItemDTO updateCartItem(User user, Long cartItemId, Integer quantity) {
-        Cart cart = cartRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (!cart.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized");
-        }
-        
-        if (quantity <= 0) {
-            cartRepository.delete(cart);
-            log.info("Removed cart item: {}", cart.getMenuItem().getName());
+    public CartItemDTO updateCartItem(CartKey key, Long menuItemId, Integer quantity) {
+        int qty = quantity != null ? quantity : 0;
+        CartStore.Snapshot cart = carts.update(key, lines -> {
+            CartStore.Line cur = lines.get(menuItemId);
+            if (cur == null) throw new RuntimeException("Cart item not found");
+            if (qty <= 0) lines.remove(menuItemId); else lines.put(menuItemId, cur.withQty(qty));
+        });
+        if (qty <= 0) {
+            log.info("Removed item {} from cart of {}", menuItemId, key);
             return null;
         }
-        
-        cart.setQuantity(quantity);
-        cart = cartRepository.save(cart);
-        log.info("Updated cart item: {} quantity to {}", cart.getMenuItem().getName(), quantity);
-        
-        return convertToDTO(cart);
+        return toDTO(find(cart, menuItemId));
     }
-    
+
     /**
      * Remove item from cart
      */
-    @Transactional
-    public void removeFromCart(User user, Long cartItemId) {
-        Cart cart = cartRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (!cart.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized");
-        }
-        
-        cartRepository.delete(cart);
-        log.info("Removed {} from cart", cart.getMenuItem().getName());
+    public void removeFromCart(CartKey key, Long menuItemId) {
+        carts.update(key, lines -> {
+            if (lines.remove(menuItemId) == null) throw new RuntimeException("Cart item not found");
+        });
+        log.info("Removed item {} from cart of {}", menuItemId, key);
     }
-    
+
     /**
      * Clear entire cart
      */
-    @Transactional
-    public void clearCart(User user) {
-        cartRepository.deleteByUser(user);
-        log.info("Cleared cart for user {}", user.getEmail());
+    public void clearCart(CartKey key) {
+        carts.clear(key);
+        log.info("Cleared cart of {}", key);
     }
-    
+
     /**
-     * Get cart item count
+     * Get cart item count (distinct items)
      */
-    @Transactional(readOnly = true)
-    public long getCartItemCount(User user) {
-        return cartRepository.countByUser(user);
+    public long getCartItemCount(CartKey key) {
+        return carts.get(key).lines().size();
     }
-    
+
+    /** One step of a bulk cart change: {@code add} to, {@code set} or {@code remove} an item's quantity. */
+    public record CartOp(String op, Long menuItemId, Integer quantity) {}
+
     /**
-     * Convert Cart entity to DTO
+     * Applies all {@code ops} in order as one change, or none of them. Menu items that are added or
+     * set are read in a single query up front. Returns null, changing nothing, when
+     * {@code expectedVersion} is given and the cart has moved on.
      */
-    private CartItemDTO convertToDTO(Cart cart) {
-        MenuItem menuItem = cart.getMenuItem();
+    public CartDTO patch(CartKey key, Long expectedVersion, List<CartOp> ops) {
+        if (ops == null || ops.isEmpty()) {
+            CartStore.Snapshot cart = carts.get(key);
+            return expectedVersion == null || cart.version() == expectedVersion ? toDTO(cart) : null;
+        }
+        if (ops.size() > MAX_OPS) throw new IllegalArgumentException("At most " + MAX_OPS + " operations per request");
+
+        Set<Long> ids = new HashSet<>();
+        for (CartOp o : ops) {
+            if (o == null || o.menuItemId() == null || o.op() == null) throw new IllegalArgumentException("Each operation needs op and menuItemId");
+            switch (o.op()) {
+                case "add", "set" -> ids.add(o.menuItemId());
+                case "remove" -> {}
+                default -> throw new IllegalArgumentException("Unknown cart operation: " + o.op());
+            }
+        }
+        Map<Long, MenuItem> items = new HashMap<>();
+        if (!ids.isEmpty()) menuItemRepository.findAllById(ids).forEach(m -> items.put(m.getId(), m));
+
+        CartStore.Snapshot cart = carts.update(key, expectedVersion, lines -> {
+            for (CartOp o : ops) {
+                Long id = o.menuItemId();
+                CartStore.Line cur = lines.get(id);
+                switch (o.op()) {
+                    case "add" -> {
+                        int qty = o.quantity() != null ? Math.max(1, o.quantity()) : 1;
+                        lines.put(id, cur != null ? cur.withQty(cur.qty() + qty) : CartStore.Line.of(item(items, id), qty));
+                    }
+                    case "set" -> {
+                        int qty = o.quantity() != null ? o.quantity() : 0;
+                        if (qty <= 0) lines.remove(id);
+                        else lines.put(id, cur != null ? cur.withQty(qty) : CartStore.Line.of(item(items, id), qty));
+                    }
+                    default -> lines.remove(id);
+                }
+            }
+        });
+        if (cart == null) {
+            log.debug("Cart of {} changed since version {}; {} operations not applied", key, expectedVersion, ops.size());
+            return null;
+        }
+        log.info("Applied {} cart operations to cart of {}", ops.size(), key);
+        return toDTO(cart);
+    }
+
+    private static MenuItem item(Map<Long, MenuItem> items, Long id) {
+        MenuItem m = items.get(id);
+        if (m == null) throw new IllegalArgumentException("Menu item not found: " + id);
+        return m;
+    }
+
+    public static CartDTO toDTO(CartStore.Snapshot cart) {
+        List<CartItemDTO> items = new ArrayList<>(cart.lines().size());
+        for (CartStore.Line l : cart.lines()) items.add(toDTO(l));
+        Collections.reverse(items);
+        double subtotal = cart.subtotal();
+        return CartDTO.builder()
+                .items(items)
+                .totalItems(items.size())
+                .subtotal(subtotal)
+                .deliveryFee(DELIVERY_FEE)
+                .tax(subtotal * TAX_RATE)
+                .total(subtotal + DELIVERY_FEE + subtotal * TAX_RATE)
+                .version(cart.version())
+                .build();
+    }
+
+    private static CartStore.Line find(CartStore.Snapshot cart, Long menuItemId) {
+        return cart.lines().stream().filter(l -> l.menuItemId().equals(menuItemId)).findFirst()
+                .orElseThrow(() -> new RuntimeException("Cart item not found"));
+    }
+
+    private static CartItemDTO toDTO(CartStore.Line line) {
         return CartItemDTO.builder()
-                .id(cart.getId())
-                .menuItemId(menuItem.getId())
-                .menuItemName(menuItem.getName())
-                .restaurantId(menuItem.getRestaurant().getId())
-                .restaurantName(menuItem.getRestaurant().getName())
-                .price(cart.getPrice())
-                .quantity(cart.getQuantity())
-                .subtotal(cart.getSubtotal())
-                .imageUrl(menuItem.getImageUrl())
+                .id(line.menuItemId())
+                .menuItemId(line.menuItemId())
+                .menuItemName(line.name())
+                .restaurantId(line.restaurantId())
+                .restaurantName(line.restaurantName())
+                .price(line.price())
+                .quantity(line.qty())
+                .subtotal(line.subtotal())
+                .imageUrl(line.imageUrl())
                 .build();
     }
 }
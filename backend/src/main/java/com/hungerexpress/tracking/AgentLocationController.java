@@ -1,14 +1,19 @@
 package com.hungerexpress.tracking;
 
+import com.hungerexpress.agent.AgentOrderAssignment;
+import com.hungerexpress.agent.AgentOrderRepository;
 import com.hungerexpress.agent.AgentProfile;
 import com.hungerexpress.agent.AgentProfileRepository;
 import com.hungerexpress.common.CurrentUser;
-import com.hungerexpress.user.User;
-import com.hungerexpress.user.UserRepository;
+import com.hungerexpress.orders.LiveOrderBoard;
+import com.hungerexpress.orders.OrderEntity;
+import com.hungerexpress.orders.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
 import java.util.List;
@@ -19,143 +24,176 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AgentLocationController {
     
-    private final UserRepository userRepo;
     private final AgentProfileRepository agentProfileRepo;
+    private final AgentLocationIndex locationIndex;
+    private final LocationWriteBehind locationWriteBehind;
+    private final LocationTrails locationTrails;
+    private final OrderLocationStream locationStream;
+    private final OrderRepository orderRepo;
+    private final AgentOrderRepository agentOrderRepo;
     
     // Update agent location (Agent)
     @PutMapping("/location")
     @PreAuthorize("hasRole('AGENT')")
     public ResponseEntity<LocationResponse> updateLocation(@RequestBody UpdateLocationRequest request) {
-        String email = CurrentUser.email();
-        if (email == null) return ResponseEntity.status(401).build();
+        Long agentId = CurrentUser.id();
+        if (agentId == null) return ResponseEntity.status(401).build();
         
-        User user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) return ResponseEntity.notFound().build();
-        
-        AgentProfile profile = agentProfileRepo.findByUserId(user.getId()).orElse(null);
-        if (profile == null) return ResponseEntity.notFound().build();
-        
-        profile.setCurrentLatitude(request.latitude());
-        profile.setCurrentLongitude(request.longitude());
-        profile.setLastLocationUpdate(Instant.now());
-        
-        agentProfileRepo.save(profile);
+        if (request.latitude() == null || request.longitude() == null
+            || Math.abs(request.latitude()) > 90 || Math.abs(request.longitude()) > 180) {
+            return ResponseEntity.badRequest().build();
+        }
         
-        LocationResponse response = new LocationResponse(
-            profile.getCurrentLatitude(),
-            profile.getCurrentLongitude(),
-            profile.getLastLocationUpdate()
-        );
+        // Pings only touch memory; LocationWriteBehind persists the newest one per agent in batches
+        Instant now = Instant.now();
+        if (!locationIndex.moveTo(agentId, request.latitude(), request.longitude(), now)) {
+            // Profile created after the index was seeded
+            AgentProfile profile = agentProfileRepo.findByUserId(agentId).orElse(null);
+            if (profile == null) return ResponseEntity.notFound().build();
+            locationIndex.upsert(profile);
+            locationIndex.moveTo(agentId, request.latitude(), request.longitude(), now);
+        }
+        locationWriteBehind.record(agentId, request.latitude(), request.longitude(), now);
+        locationTrails.record(agentId, request.latitude(), request.longitude(), now);
+        locationStream.publish(agentId, request.latitude(), request.longitude(), now);
         
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(new LocationResponse(request.latitude(), request.longitude(), now));
     }
     
     // Get agent location by ID (Customer tracking their order)
     @GetMapping("/agent/{agentId}")
     @PreAuthorize("hasRole('CUSTOMER') or hasRole('ADMIN')")
     public ResponseEntity<LocationResponse> getAgentLocation(@PathVariable Long agentId) {
-        AgentProfile profile = agentProfileRepo.findByUserId(agentId).orElse(null);
-        if (profile == null) return ResponseEntity.notFound().build();
+        AgentLocationIndex.AgentPoint agent = locationIndex.get(agentId).orElseGet(() -> {
+            AgentProfile profile = agentProfileRepo.findByUserId(agentId).orElse(null);
+            if (profile == null) return null;
+            locationIndex.upsert(profile);
+            return locationIndex.get(agentId).orElse(null);
+        });
+        if (agent == null) return ResponseEntity.notFound().build();
         
         // Only return location if agent is currently delivering (online)
-        if (!Boolean.TRUE.equals(profile.getIsAvailable())) {
+        if (!agent.available()) {
             return ResponseEntity.status(404).build();
         }
         
         LocationResponse response = new LocationResponse(
-            profile.getCurrentLatitude(),
-            profile.getCurrentLongitude(),
-            profile.getLastLocationUpdate()
+            agent.latitude(),
+            agent.longitude(),
+            agent.lastUpdate()
         );
         
         return ResponseEntity.ok(response);
     }
     
+    // Route driven so far for an order's current delivery (customer of the order, its agent, or admin)
+    @GetMapping("/orders/{orderId}/trail")
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('AGENT') or hasRole('ADMIN')")
+    public ResponseEntity<TrailResponse> getOrderTrail(@PathVariable Long orderId) {
+        Long uid = CurrentUser.id();
+        if (uid == null) return ResponseEntity.status(401).build();
+        
+        OrderEntity order = orderRepo.findById(orderId).orElse(null);
+        if (order == null) return ResponseEntity.notFound().build();
+        
+        if (!canTrack(order, uid)) return ResponseEntity.status(403).build();
+        if (order.getAssignedTo() == null) return ResponseEntity.notFound().build();
+        
+        // The current delivery starts when this agent took the order and ends on delivery
+        AgentOrderAssignment assignment = agentOrderRepo.findTopByOrderIdOrderByAssignedAtDesc(orderId);
+        Instant from = assignment != null && order.getAssignedTo().equals(assignment.getAgentId())
+            ? assignment.getAssignedAt()
+            : (order.getDispatchedAt() != null ? order.getDispatchedAt() : order.getPlacedAt());
+        LocationTrails.Trail trail = locationTrails.trail(order.getAssignedTo(), from, order.getDeliveredAt());
+        
+        return ResponseEntity.ok(new TrailResponse(
+            orderId,
+            order.getAssignedTo(),
+            trail.points(),
+            trail.polyline(),
+            trail.from(),
+            trail.to()
+        ));
+    }
+    
+    // Live position of the order's agent, pushed as throttled "location" events; replaces polling /agent/{agentId}
+    @GetMapping(value = "/orders/{orderId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('CUSTOMER') or hasRole('AGENT') or hasRole('ADMIN')")
+    public ResponseEntity<SseEmitter> streamOrderLocation(@PathVariable Long orderId) {
+        Long uid = CurrentUser.id();
+        if (uid == null) return ResponseEntity.status(401).build();
+        
+        OrderEntity order = orderRepo.findById(orderId).orElse(null);
+        if (order == null) return ResponseEntity.notFound().build();
+        if (!canTrack(order, uid)) return ResponseEntity.status(403).build();
+        if (order.getAssignedTo() == null) return ResponseEntity.notFound().build();
+        // Nothing left to track; 204 also tells EventSource to stop reconnecting
+        if (LiveOrderBoard.isTerminal(order.getStatus())) return ResponseEntity.noContent().build();
+        
+        Long agentId = order.getAssignedTo();
+        return ResponseEntity.ok(locationStream.subscribe(orderId, agentId, locationIndex.get(agentId).orElse(null)));
+    }
+    
+    // The order's customer, its assigned agent, or an admin
+    private static boolean canTrack(OrderEntity order, Long uid) {
+        String role = CurrentUser.role();
+        boolean admin = role != null && role.replace("ROLE_", "").equals("ADMIN");
+        return admin || uid.equals(order.getUserId()) || uid.equals(order.getAssignedTo());
+    }
+    
     // Get all active agents with locations (Admin/Map view)
     @GetMapping("/agents/active")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<AgentLocationDto>> getActiveAgentsLocations() {
-        List<AgentProfile> activeAgents = agentProfileRepo.findAll().stream()
-            .filter(agent -> Boolean.TRUE.equals(agent.getIsAvailable()))
-            .filter(agent -> agent.getCurrentLatitude() != null && agent.getCurrentLongitude() != null)
-            .collect(Collectors.toList());
-        
-        List<AgentLocationDto> locations = activeAgents.stream()
-            .map(agent -> {
-                User user = userRepo.findById(agent.getUserId()).orElse(null);
-                return new AgentLocationDto(
-                    agent.getUserId(),
-                    user != null ? user.getFullName() : "Unknown",
-                    agent.getCurrentLatitude(),
-                    agent.getCurrentLongitude(),
-                    agent.getLastLocationUpdate()
-                );
-            })
+        List<AgentLocationDto> locations = locationIndex.active().stream()
+            .map(agent -> new AgentLocationDto(
+                agent.agentId(),
+                agent.name(),
+                agent.latitude(),
+                agent.longitude(),
+                agent.lastUpdate()
+            ))
             .collect(Collectors.toList());
         
         return ResponseEntity.ok(locations);
     }
     
-    // Get nearby agents (for order assignment)
+    // Get nearby agents (for order assignment); with limit, the k nearest within the radius
     @GetMapping("/agents/nearby")
     @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
     public ResponseEntity<List<NearbyAgentDto>> getNearbyAgents(
         @RequestParam Double latitude,
         @RequestParam Double longitude,
-        @RequestParam(defaultValue = "5.0") Double radiusKm
+        @RequestParam(defaultValue = "5.0") Double radiusKm,
+        @RequestParam(required = false) Integer limit
     ) {
-        List<AgentProfile> availableAgents = agentProfileRepo.findAll().stream()
-            .filter(agent -> Boolean.TRUE.equals(agent.getIsAvailable()))
-            .filter(agent -> agent.getCurrentLatitude() != null && agent.getCurrentLongitude() != null)
-            .collect(Collectors.toList());
-        
-        List<NearbyAgentDto> nearbyAgents = availableAgents.stream()
-            .map(agent -> {
-                double distance = calculateDistance(
-                    latitude, longitude,
-                    agent.getCurrentLatitude(), agent.getCurrentLongitude()
-                );
-                
-                User user = userRepo.findById(agent.getUserId()).orElse(null);
-                
-                return new NearbyAgentDto(
-                    agent.getUserId(),
-                    user != null ? user.getFullName() : "Unknown",
-                    agent.getCurrentLatitude(),
-                    agent.getCurrentLongitude(),
-                    distance,
-                    agent.getVehicleType(),
-                    agent.getVehicleNumber()
-                );
-            })
-            .filter(dto -> dto.distanceKm() <= radiusKm)
-            .sorted((a, b) -> Double.compare(a.distanceKm(), b.distanceKm()))
+        List<AgentLocationIndex.Nearby> hits = limit != null
+            ? locationIndex.nearest(latitude, longitude, limit, radiusKm)
+            : locationIndex.within(latitude, longitude, radiusKm);
+        
+        List<NearbyAgentDto> nearbyAgents = hits.stream()
+            .map(hit -> new NearbyAgentDto(
+                hit.agent().agentId(),
+                hit.agent().name(),
+                hit.agent().latitude(),
+                hit.agent().longitude(),
+                hit.distanceKm(),
+                hit.agent().vehicleType(),
+                hit.agent().vehicleNumber()
+            ))
             .collect(Collectors.toList());
         
         return ResponseEntity.ok(nearbyAgents);
     }
     
-    // Calculate distance between two coordinates (Haversine formula)
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int EARTH_RADIUS = 6371; // Radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return EARTH_RADIUS * c;
-    }
-    
     // DTOs
     record UpdateLocationRequest(Double latitude, Double longitude) {}
     
     record LocationResponse(Double latitude, Double longitude, Instant lastUpdate) {}
     
+    // polyline uses the encoded polyline format at 1e-5 degree precision
+    record TrailResponse(Long orderId, Long agentId, int points, String polyline, Instant from, Instant to) {}
+    
     record AgentLocationDto(
         Long agentId,
         String agentName,
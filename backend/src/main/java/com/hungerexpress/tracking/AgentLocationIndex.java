@@ -0,0 +1,263 @@
+package com.hungerexpress.tracking;
+
+import com.hungerexpress.agent.AgentProfile;
+import com.hungerexpress.agent.AgentProfileRepository;
+import com.hungerexpress.user.User;
+import com.hungerexpress.user.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory uniform lat/lng grid of available agents with a known position, plus the set of
+ * all available agents.
+ * Each cell holds the ids of the agents currently inside it, so radius and k-nearest queries only
+ * look at the cells around the query point instead of every agent. Agent display names are cached
+ * alongside so results need no per-agent user lookups.
+ * Seeded from agent_profile at startup and kept current by the location and availability endpoints;
+ * it is the read side of agent positions, which reach the DB later through {@link LocationWriteBehind}.
+ */
+@Component
+@Slf4j
+public class AgentLocationIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEG_LAT = 111.32;
+    // Beyond this many cells a bounding-box walk costs more than scanning the available set
+    private static final int MAX_CELLS_PER_QUERY = 4096;
+
+    private final AgentProfileRepository profiles;
+    private final UserRepository users;
+    private final double cellDeg;
+
+    /** Latest known state of one agent. Immutable; replaced on every update. */
+    public record AgentPoint(Long agentId, String name, boolean available, Double latitude, Double longitude,
+                             Instant lastUpdate, Double rating, String vehicleType, String vehicleNumber) {
+        boolean located() {
+            return latitude != null && longitude != null;
+        }
+
+        boolean indexed() {
+            return available && located();
+        }
+    }
+
+    public record Nearby(AgentPoint agent, double distanceKm) {}
+
+    private final Map<Long, AgentPoint> agents = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+    private final Set<Long> available = ConcurrentHashMap.newKeySet();
+
+    public AgentLocationIndex(AgentProfileRepository profiles, UserRepository users,
+                              @Value("${app.tracking.grid.cell-deg:0.02}") double cellDeg) {
+        this.profiles = profiles;
+        this.users = users;
+        this.cellDeg = cellDeg;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        List<AgentProfile> all = profiles.findAll();
+        Map<Long, String> names = users.findAllById(all.stream().map(AgentProfile::getUserId).toList()).stream()
+                .collect(Collectors.toMap(User::getId, u -> displayName(u.getFullName()), (a, b) -> a));
+        for (AgentProfile p : all) {
+            apply(toPoint(p, names.getOrDefault(p.getUserId(), "Unknown")));
+        }
+        log.info("Agent location index seeded with {} agents ({} available)", all.size(), available.size());
+    }
+
+    /**
+     * Re-reads availability, position and vehicle from the profile; keeps the cached name.
+     * A position newer than the profile's (a ping not yet flushed by {@link LocationWriteBehind}) is kept.
+     */
+    public void upsert(AgentProfile p) {
+        AgentPoint cur = agents.get(p.getUserId());
+        String name = cur != null ? cur.name() : users.findById(p.getUserId()).map(u -> displayName(u.getFullName())).orElse("Unknown");
+        AgentPoint fromDb = toPoint(p, name);
+        update(p.getUserId(), prev -> {
+            if (prev == null || prev.lastUpdate() == null
+                    || (fromDb.lastUpdate() != null && !prev.lastUpdate().isAfter(fromDb.lastUpdate()))) {
+                return fromDb;
+            }
+            return new AgentPoint(fromDb.agentId(), prev.name(), fromDb.available(), prev.latitude(), prev.longitude(),
+                    prev.lastUpdate(), fromDb.rating(), fromDb.vehicleType(), fromDb.vehicleNumber());
+        });
+    }
+
+    /** Moves a known agent to a new position; returns false if the agent isn't indexed yet. */
+    public boolean moveTo(Long agentId, double lat, double lng, Instant at) {
+        if (!agents.containsKey(agentId)) return false;
+        return update(agentId, prev -> prev == null ? null : new AgentPoint(agentId, prev.name(), prev.available(),
+                lat, lng, at, prev.rating(), prev.vehicleType(), prev.vehicleNumber())) != null;
+    }
+
+    public void rename(Long agentId, String fullName) {
+        agents.computeIfPresent(agentId, (id, cur) -> new AgentPoint(id, displayName(fullName), cur.available(),
+                cur.latitude(), cur.longitude(), cur.lastUpdate(), cur.rating(), cur.vehicleType(), cur.vehicleNumber()));
+    }
+
+    public Optional<AgentPoint> get(Long agentId) {
+        return Optional.ofNullable(agents.get(agentId));
+    }
+
+    /** Available agents with a known position, in no particular order. */
+    public List<AgentPoint> active() {
+        return availableAgents().stream().filter(AgentPoint::located).toList();
+    }
+
+    /** Every agent currently online, located or not. */
+    public List<AgentPoint> availableAgents() {
+        List<AgentPoint> out = new ArrayList<>(available.size());
+        for (Long id : available) {
+            AgentPoint p = agents.get(id);
+            if (p != null && p.available()) out.add(p);
+        }
+        return out;
+    }
+
+    public int availableCount() {
+        return available.size();
+    }
+
+    /** Available agents within {@code radiusKm} of the point, nearest first. */
+    public List<Nearby> within(double lat, double lng, double radiusKm) {
+        List<Nearby> out = new ArrayList<>();
+        double dLat = radiusKm / KM_PER_DEG_LAT;
+        double dLng = radiusKm / (KM_PER_DEG_LAT * Math.max(0.01, Math.cos(Math.toRadians(lat))));
+        int r0 = row(lat - dLat), r1 = row(lat + dLat);
+        int c0 = col(lng - dLng), c1 = col(lng + dLng);
+        // an agent moving between cells mid-query could otherwise be seen twice
+        Set<Long> seen = new HashSet<>();
+        if ((long) (r1 - r0 + 1) * (c1 - c0 + 1) > MAX_CELLS_PER_QUERY) {
+            for (AgentPoint p : active()) addIfWithin(out, p, lat, lng, radiusKm);
+        } else {
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    Set<Long> ids = cells.get(key(r, c));
+                    if (ids == null) continue;
+                    for (Long id : ids) {
+                        AgentPoint p = agents.get(id);
+                        if (p != null && p.indexed() && seen.add(id)) addIfWithin(out, p, lat, lng, radiusKm);
+                    }
+                }
+            }
+        }
+        out.sort(Comparator.comparingDouble(Nearby::distanceKm));
+        return out;
+    }
+
+    /**
+     * Up to {@code k} nearest available agents within {@code maxRadiusKm}, nearest first.
+     * Walks rings of cells outward and stops once the k-th candidate is closer than any
+     * unvisited cell could be.
+     */
+    public List<Nearby> nearest(double lat, double lng, int k, double maxRadiusKm) {
+        if (k <= 0) return List.of();
+        double cellKm = cellDeg * KM_PER_DEG_LAT * Math.max(0.01, Math.cos(Math.toRadians(lat)));
+        int maxRing = (int) Math.ceil(maxRadiusKm / cellKm) + 1;
+        if ((long) (2 * maxRing + 1) * (2 * maxRing + 1) > MAX_CELLS_PER_QUERY) {
+            List<Nearby> all = within(lat, lng, maxRadiusKm);
+            return all.size() > k ? all.subList(0, k) : all;
+        }
+        int r0 = row(lat), c0 = col(lng);
+        List<Nearby> found = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = r0 - ring; r <= r0 + ring; r++) {
+                for (int c = c0 - ring; c <= c0 + ring; c++) {
+                    if (Math.abs(r - r0) != ring && Math.abs(c - c0) != ring) continue; // ring border only
+                    Set<Long> ids = cells.get(key(r, c));
+                    if (ids == null) continue;
+                    for (Long id : ids) {
+                        AgentPoint p = agents.get(id);
+                        if (p != null && p.indexed() && seen.add(id)) addIfWithin(found, p, lat, lng, maxRadiusKm);
+                    }
+                }
+            }
+            if (found.size() >= k) {
+                found.sort(Comparator.comparingDouble(Nearby::distanceKm));
+                // anything in ring+1 or beyond is at least ring * cellKm away
+                if (found.get(k - 1).distanceKm() <= ring * cellKm) break;
+            }
+        }
+        found.sort(Comparator.comparingDouble(Nearby::distanceKm));
+        return found.size() > k ? new ArrayList<>(found.subList(0, k)) : found;
+    }
+
+    private void apply(AgentPoint next) {
+        update(next.agentId(), prev -> next);
+    }
+
+    // Per-agent updates are serialized by compute(); cell membership moves inside it
+    private AgentPoint update(Long agentId, UnaryOperator<AgentPoint> change) {
+        return agents.compute(agentId, (id, prev) -> {
+            AgentPoint next = change.apply(prev);
+            if (next == null) return prev;
+            if (prev != null && prev.indexed()) {
+                Long oldCell = cellOf(prev);
+                if (!next.indexed() || !oldCell.equals(cellOf(next))) removeFromCell(oldCell, id);
+            }
+            if (next.indexed()) {
+                cells.computeIfAbsent(cellOf(next), c -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            if (next.available()) available.add(id); else available.remove(id);
+            return next;
+        });
+    }
+
+    private void removeFromCell(Long cell, Long id) {
+        Set<Long> ids = cells.get(cell);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) cells.remove(cell, ids);
+    }
+
+    private static void addIfWithin(List<Nearby> out, AgentPoint p, double lat, double lng, double radiusKm) {
+        double d = distanceKm(lat, lng, p.latitude(), p.longitude());
+        if (d <= radiusKm) out.add(new Nearby(p, d));
+    }
+
+    private Long cellOf(AgentPoint p) {
+        return key(row(p.latitude()), col(p.longitude()));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90.0) / cellDeg);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor((lng + 180.0) / cellDeg);
+    }
+
+    private static Long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static AgentPoint toPoint(AgentProfile p, String name) {
+        return new AgentPoint(p.getUserId(), name, Boolean.TRUE.equals(p.getIsAvailable()),
+                p.getCurrentLatitude(), p.getCurrentLongitude(), p.getLastLocationUpdate(),
+                p.getRating(), p.getVehicleType(), p.getVehicleNumber());
+    }
+
+    private static String displayName(String fullName) {
+        return fullName != null ? fullName : "Unknown";
+    }
+
+    // Haversine
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,128 @@
+package com.hungerexpress.tracking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Recent GPS samples per agent, kept only in memory.
+ * Each agent gets a fixed-size ring of primitive arrays: coordinates as 1e-5 degree integers
+ * (the precision of an encoded polyline, ~1 m) and time as seconds since this component started,
+ * so a sample costs 12 bytes and nothing is boxed. Memory is bounded by capacity x max-agents:
+ * a ring untouched for idle-ttl-ms is dropped, and past max-agents the least recently used go first.
+ */
+@Component
+public class LocationTrails {
+
+    private static final double E5 = 1e5;
+
+    private final int capacity;
+    private final long baseEpochSec = Instant.now().getEpochSecond();
+    private final Cache<Long, Ring> rings;
+
+    /** Samples between two instants, oldest first, as a delta-encoded polyline. */
+    public record Trail(int points, String polyline, Instant from, Instant to) {
+        static final Trail EMPTY = new Trail(0, "", null, null);
+    }
+
+    public LocationTrails(@Value("${app.tracking.trail.capacity:512}") int capacity,
+                          @Value("${app.tracking.trail.max-agents:20000}") int maxAgents,
+                          @Value("${app.tracking.trail.idle-ttl-ms:7200000}") long idleTtlMs) {
+        this.capacity = Math.max(2, capacity);
+        this.rings = Caffeine.newBuilder().maximumSize(maxAgents)
+                .expireAfterAccess(Duration.ofMillis(idleTtlMs)).build();
+    }
+
+    public void record(Long agentId, double latitude, double longitude, Instant at) {
+        Ring ring = rings.get(agentId, id -> new Ring(capacity));
+        ring.add(toSec(at), toE5(latitude), toE5(longitude));
+    }
+
+    /** The agent's samples taken in [{@code from}, {@code to}]; either bound may be null for open-ended. */
+    public Trail trail(Long agentId, Instant from, Instant to) {
+        Ring ring = rings.getIfPresent(agentId);
+        if (ring == null) return Trail.EMPTY;
+        int fromSec = from != null ? toSec(from) : Integer.MIN_VALUE;
+        int toSec = to != null ? toSec(to) : Integer.MAX_VALUE;
+        return ring.encode(fromSec, toSec, baseEpochSec);
+    }
+
+    public long agentCount() {
+        return rings.estimatedSize();
+    }
+
+    private int toSec(Instant at) {
+        long s = at.getEpochSecond() - baseEpochSec;
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE - 1, s));
+    }
+
+    private static int toE5(double deg) {
+        return (int) Math.round(deg * E5);
+    }
+
+    // One writer per agent in practice; readers are rare, so a monitor per ring is enough
+    private static final class Ring {
+        private final int[] time;
+        private final int[] lat;
+        private final int[] lng;
+        private int next = 0;
+        private int size = 0;
+
+        Ring(int capacity) {
+            time = new int[capacity];
+            lat = new int[capacity];
+            lng = new int[capacity];
+        }
+
+        synchronized void add(int sec, int latE5, int lngE5) {
+            if (size > 0) {
+                int last = (next - 1 + time.length) % time.length;
+                // A stationary agent would otherwise flush the route out of the ring
+                if (lat[last] == latE5 && lng[last] == lngE5) {
+                    time[last] = sec;
+                    return;
+                }
+            }
+            time[next] = sec;
+            lat[next] = latE5;
+            lng[next] = lngE5;
+            next = (next + 1) % time.length;
+            if (size < time.length) size++;
+        }
+
+        synchronized Trail encode(int fromSec, int toSec, long baseEpochSec) {
+            StringBuilder out = new StringBuilder();
+            int start = (next - size + time.length) % time.length;
+            int points = 0, prevLat = 0, prevLng = 0, first = 0, last = 0;
+            for (int i = 0; i < size; i++) {
+                int idx = (start + i) % time.length;
+                int t = time[idx];
+                if (t < fromSec || t > toSec) continue;
+                if (points == 0) first = t;
+                last = t;
+                encodeSigned(out, lat[idx] - prevLat);
+                encodeSigned(out, lng[idx] - prevLng);
+                prevLat = lat[idx];
+                prevLng = lng[idx];
+                points++;
+            }
+            if (points == 0) return Trail.EMPTY;
+            return new Trail(points, out.toString(),
+                    Instant.ofEpochSecond(baseEpochSec + first), Instant.ofEpochSecond(baseEpochSec + last));
+        }
+    }
+
+    // Encoded polyline algorithm: zig-zag the delta, then emit 5-bit chunks offset into printable ASCII
+    static void encodeSigned(StringBuilder out, int value) {
+        int v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+}
@@ -0,0 +1,127 @@
+package com.hungerexpress.tracking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for agent GPS pings.
+ * A ping only replaces the agent's entry in a concurrent map; a scheduled flusher drains the map
+ * and writes the newest position per agent in JDBC batch UPDATEs of the three location columns.
+ * Pings that arrive between flushes coalesce, so DB writes per interval are bounded by the number
+ * of moving agents rather than the ping rate. Readers are served from {@link AgentLocationIndex}.
+ */
+@Component
+@Slf4j
+public class LocationWriteBehind {
+
+    private static final String UPDATE_SQL =
+            "UPDATE agent_profile SET current_latitude = ?, current_longitude = ?, last_location_update = ? WHERE user_id = ?";
+
+    record Ping(double latitude, double longitude, Instant at) {}
+
+    private final JdbcTemplate jdbc;
+    private final int batchSize;
+    private final int warnPending;
+    private final Map<Long, Ping> pending = new ConcurrentHashMap<>();
+
+    private final Counter received;
+    private final Counter coalesced;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public LocationWriteBehind(JdbcTemplate jdbc, MeterRegistry meters,
+                               @Value("${app.tracking.write-behind.batch-size:500}") int batchSize,
+                               @Value("${app.tracking.write-behind.warn-pending:10000}") int warnPending) {
+        this.jdbc = jdbc;
+        this.batchSize = Math.max(1, batchSize);
+        this.warnPending = warnPending;
+        Gauge.builder("tracking.location.pending", pending, Map::size)
+                .description("Agent positions waiting to be flushed").register(meters);
+        this.received = Counter.builder("tracking.location.pings").description("GPS pings accepted").register(meters);
+        this.coalesced = Counter.builder("tracking.location.coalesced")
+                .description("Pings superseded by a newer ping before being flushed").register(meters);
+        this.written = Counter.builder("tracking.location.flushed").description("Positions written to the DB").register(meters);
+        this.failed = Counter.builder("tracking.location.flush.failures").description("Failed flush batches").register(meters);
+        this.flushTimer = Timer.builder("tracking.location.flush").description("Time spent per flush").register(meters);
+    }
+
+    public void record(Long agentId, double latitude, double longitude, Instant at) {
+        received.increment();
+        if (pending.put(agentId, new Ping(latitude, longitude, at)) != null) coalesced.increment();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.tracking.write-behind.flush-ms:2000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    // Synchronized so the scheduled run and the shutdown flush never interleave
+    public synchronized int flush() {
+        if (pending.isEmpty()) return 0;
+        int backlog = pending.size();
+        if (backlog > warnPending) {
+            log.warn("Location write-behind backlog at {} agents (warn threshold {})", backlog, warnPending);
+        }
+        return flushTimer.record(() -> {
+            int total = 0;
+            List<Map.Entry<Long, Ping>> batch = new ArrayList<>(Math.min(backlog, batchSize));
+            for (Long agentId : pending.keySet()) {
+                // remove() hands over whatever is newest right now; a later ping just waits for the next run
+                Ping p = pending.remove(agentId);
+                if (p == null) continue;
+                batch.add(Map.entry(agentId, p));
+                if (batch.size() >= batchSize) {
+                    total += write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) total += write(batch);
+            return total;
+        });
+    }
+
+    private int write(List<Map.Entry<Long, Ping>> batch) {
+        try {
+            jdbc.batchUpdate(UPDATE_SQL, batch, batch.size(), (ps, e) -> {
+                ps.setDouble(1, e.getValue().latitude());
+                ps.setDouble(2, e.getValue().longitude());
+                ps.setTimestamp(3, Timestamp.from(e.getValue().at()));
+                ps.setLong(4, e.getKey());
+            });
+            written.increment(batch.size());
+            return batch.size();
+        } catch (Exception ex) {
+            failed.increment();
+            log.error("Failed to flush {} agent positions: {}", batch.size(), ex.getMessage(), ex);
+            // Put them back unless a newer ping already took their place
+            for (Map.Entry<Long, Ping> e : batch) pending.putIfAbsent(e.getKey(), e.getValue());
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int n = flush();
+        log.info("Flushed {} pending agent positions on shutdown ({} left)", n, pending.size());
+    }
+}
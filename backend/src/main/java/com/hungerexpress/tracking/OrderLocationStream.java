@@ -0,0 +1,228 @@
+package com.hungerexpress.tracking;
+
+import com.hungerexpress.orders.LiveOrderBoard;
+import com.hungerexpress.orders.OrderLifecycleEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Live agent positions pushed to the people tracking an order, over SSE.
+ * Subscribers are grouped by the agent delivering their order, so a ping costs one map lookup
+ * and a reference swap per subscriber. Each subscriber holds only the newest unsent position;
+ * a timer hands subscribers with a new position to a small sender pool at most once per
+ * {@code app.tracking.stream.min-interval-ms}, so slow clients skip intermediate positions
+ * instead of building a queue, and one client that stops reading holds up only its own sends.
+ * A subscriber stuck in a send for longer than {@code stall-timeout-ms} is dropped, as in
+ * {@link com.hungerexpress.orders.OrderEventBus}.
+ * A stream ends with an {@code ended} event once its order is delivered or cancelled, or is
+ * handed to another agent (the client reconnects to follow the new one).
+ */
+@Component
+@Slf4j
+public class OrderLocationStream {
+
+    record Position(double latitude, double longitude, Instant at) {}
+
+    private static final class Subscriber {
+        final Long orderId;
+        final Long agentId;
+        final SseEmitter emitter;
+        final AtomicReference<Position> latest = new AtomicReference<>();
+        final AtomicBoolean sending = new AtomicBoolean();
+        // Why the stream is over, once it is; sent as the last event
+        volatile String ended;
+        // Start of the send in progress, or 0 when idle; read by the reaper
+        volatile long sendStartedNanos = 0L;
+
+        Subscriber(Long orderId, Long agentId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.agentId = agentId;
+            this.emitter = emitter;
+        }
+    }
+
+    private final long timeoutMs;
+    private final long stallNanos;
+    private final Map<Long, Set<Subscriber>> byAgent = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> byOrder = new ConcurrentHashMap<>();
+    private final ExecutorService senders;
+    private final ExecutorService closers;
+    private final ScheduledExecutorService timer;
+
+    public OrderLocationStream(@Value("${app.tracking.stream.min-interval-ms:1000}") long minIntervalMs,
+                               @Value("${app.tracking.stream.timeout-ms:1800000}") long timeoutMs,
+                               @Value("${app.tracking.stream.sender-threads:4}") int senderThreads,
+                               @Value("${app.tracking.stream.stall-timeout-ms:30000}") long stallTimeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMs);
+        AtomicInteger n = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> daemon(r, "order-location-stream-" + n.incrementAndGet()));
+        // Only subscribers stuck in a send are closed here, so at most one closer per sender thread blocks
+        AtomicInteger c = new AtomicInteger();
+        this.closers = Executors.newCachedThreadPool(r -> daemon(r, "order-location-closer-" + c.incrementAndGet()));
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "order-location-timer"));
+        long interval = Math.max(100, minIntervalMs);
+        timer.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Opens a stream of {@code location} events for the agent delivering {@code orderId}, starting from {@code current}. */
+    public SseEmitter subscribe(Long orderId, Long agentId, AgentLocationIndex.AgentPoint current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(orderId, agentId, emitter);
+        add(byAgent, agentId, sub);
+        add(byOrder, orderId, sub);
+        Runnable remove = () -> unsubscribe(sub);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(ex -> remove.run());
+        if (current != null && current.latitude() != null && current.longitude() != null) {
+            sub.latest.set(new Position(current.latitude(), current.longitude(), current.lastUpdate()));
+        }
+        return emitter;
+    }
+
+    /** Called from the ping path; never blocks on a client. */
+    public void publish(Long agentId, double latitude, double longitude, Instant at) {
+        Set<Subscriber> subs = byAgent.get(agentId);
+        if (subs == null || subs.isEmpty()) return;
+        Position p = new Position(latitude, longitude, at);
+        for (Subscriber s : subs) s.latest.set(p);
+    }
+
+    public int subscriberCount() {
+        return byAgent.values().stream().mapToInt(Set::size).sum();
+    }
+
+    // After commit; ends the streams of orders that are over or now carried by another agent
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderLifecycle(OrderLifecycleEvent e) {
+        Set<Subscriber> subs = byOrder.get(e.orderId());
+        if (subs == null || subs.isEmpty()) return;
+        for (Subscriber s : subs) {
+            String reason = LiveOrderBoard.isTerminal(e.status()) ? e.status().name()
+                    : !Objects.equals(e.assignedTo(), s.agentId) ? "REASSIGNED" : null;
+            if (reason != null) {
+                s.ended = reason;
+                schedule(s);
+            }
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> subs : byAgent.values()) {
+            for (Subscriber s : subs) {
+                long started = s.sendStartedNanos;
+                if (started != 0L && now - started > stallNanos) {
+                    reapStalled(s);
+                } else if (s.latest.get() != null) {
+                    schedule(s);
+                }
+            }
+        }
+    }
+
+    private void schedule(Subscriber s) {
+        if (s.sending.compareAndSet(false, true)) senders.execute(() -> send(s));
+    }
+
+    // One send per subscriber at a time; a position arriving meanwhile waits for the next tick
+    private void send(Subscriber s) {
+        try {
+            Position p = s.latest.getAndSet(null);
+            if (p != null) {
+                s.sendStartedNanos = System.nanoTime();
+                s.emitter.send(SseEmitter.event().name("location")
+                        .data(new LocationEvent(s.orderId, s.agentId, p.latitude(), p.longitude(), p.at())));
+            }
+            String ended = s.ended;
+            if (ended != null) {
+                s.sendStartedNanos = System.nanoTime();
+                s.emitter.send(SseEmitter.event().name("ended").data(ended));
+                if (unsubscribe(s)) s.emitter.complete();
+            }
+        } catch (Exception ex) {
+            log.debug("Dropping location subscriber for order {}: {}", s.orderId, ex.getMessage());
+            if (unsubscribe(s)) close(s, ex);
+        } finally {
+            s.sendStartedNanos = 0L;
+            s.sending.set(false);
+        }
+        // An end arriving during this send would otherwise wait for a position that may never come
+        if (s.ended != null && byOrder.getOrDefault(s.orderId, Set.of()).contains(s)) schedule(s);
+    }
+
+    // The client stopped reading; complete() would wait on the blocked send, so close elsewhere
+    private void reapStalled(Subscriber s) {
+        if (!unsubscribe(s)) return;
+        log.debug("Reaping stalled location subscriber for order {}", s.orderId);
+        closers.execute(() -> close(s, null));
+    }
+
+    private static void close(Subscriber s, Exception cause) {
+        try {
+            if (cause != null) s.emitter.completeWithError(cause); else s.emitter.complete();
+        } catch (Exception ignored) {
+            // the connection is already gone
+        }
+    }
+
+    // True for the caller that actually removed it
+    private boolean unsubscribe(Subscriber sub) {
+        boolean removed = remove(byAgent, sub.agentId, sub);
+        remove(byOrder, sub.orderId, sub);
+        return removed;
+    }
+
+    private static void add(Map<Long, Set<Subscriber>> index, Long key, Subscriber sub) {
+        index.compute(key, (id, subs) -> {
+            Set<Subscriber> out = subs != null ? subs : ConcurrentHashMap.newKeySet();
+            out.add(sub);
+            return out;
+        });
+    }
+
+    private static boolean remove(Map<Long, Set<Subscriber>> index, Long key, Subscriber sub) {
+        boolean[] removed = {false};
+        index.computeIfPresent(key, (id, subs) -> {
+            removed[0] = subs.remove(sub);
+            return subs.isEmpty() ? null : subs;
+        });
+        return removed[0];
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+        byAgent.values().forEach(subs -> subs.forEach(s -> s.emitter.complete()));
+        byAgent.clear();
+        byOrder.clear();
+    }
+
+    record LocationEvent(Long orderId, Long agentId, double latitude, double longitude, Instant at) {}
+}
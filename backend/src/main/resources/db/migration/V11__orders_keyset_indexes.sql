@@ -0,0 +1,4 @@
+-- Composite indexes backing keyset (created_at, id) pagination of order listings
+CREATE INDEX idx_orders_user_created ON orders (user_id, created_at, id);
+CREATE INDEX idx_orders_restaurant_created ON orders (restaurant_id, created_at, id);
+CREATE INDEX idx_orders_created ON orders (created_at, id);
@@ -0,0 +1,12 @@
+-- Per-day, per-restaurant order rollup backing the admin stats endpoints
+CREATE TABLE IF NOT EXISTS daily_order_metrics (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  metric_date DATE NOT NULL,
+  restaurant_id BIGINT NOT NULL,
+  order_count BIGINT NOT NULL DEFAULT 0,
+  gmv DECIMAL(14,2) NOT NULL DEFAULT 0,
+  discount DECIMAL(14,2) NOT NULL DEFAULT 0,
+  delivered_count BIGINT NOT NULL DEFAULT 0,
+  cancelled_count BIGINT NOT NULL DEFAULT 0,
+  CONSTRAINT uk_daily_order_metrics UNIQUE (metric_date, restaurant_id)
+);
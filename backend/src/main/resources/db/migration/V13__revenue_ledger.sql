@@ -0,0 +1,29 @@
+-- Monthly owner revenue, maintained incrementally from order deliveries
+CREATE TABLE IF NOT EXISTS revenue (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  owner_id BIGINT NOT NULL,
+  restaurant_id BIGINT NOT NULL,
+  month_year VARCHAR(7) NOT NULL,
+  total_orders INT NOT NULL DEFAULT 0,
+  total_revenue DECIMAL(12,2) NOT NULL DEFAULT 0,
+  platform_fee DECIMAL(12,2) NOT NULL DEFAULT 0,
+  net_earnings DECIMAL(12,2) NOT NULL DEFAULT 0,
+  last_updated TIMESTAMP NULL,
+  CONSTRAINT uk_revenue_owner_restaurant_month UNIQUE (owner_id, restaurant_id, month_year)
+);
+
+CREATE INDEX idx_revenue_restaurant_month ON revenue (restaurant_id, month_year);
+
+-- One row per order counted into revenue; order_id is the idempotency key
+CREATE TABLE IF NOT EXISTS revenue_ledger (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  order_id BIGINT NOT NULL,
+  owner_id BIGINT NOT NULL,
+  restaurant_id BIGINT NOT NULL,
+  month_year VARCHAR(7) NOT NULL,
+  amount DECIMAL(12,2) NOT NULL,
+  reversed BOOLEAN NOT NULL DEFAULT FALSE,
+  posted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  reversed_at TIMESTAMP NULL,
+  CONSTRAINT uk_revenue_ledger_order UNIQUE (order_id)
+);
@@ -0,0 +1,12 @@
+-- Pooled id blocks for orders and their items, so Hibernate can batch their INSERTs
+-- (MySQL has no sequences; Hibernate keeps the next block's upper bound in a one-row table).
+-- Seeded past the current ids plus one block of 50.
+CREATE TABLE IF NOT EXISTS orders_seq (
+  next_val BIGINT
+);
+INSERT INTO orders_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM orders;
+
+CREATE TABLE IF NOT EXISTS order_item_seq (
+  next_val BIGINT
+);
+INSERT INTO order_item_seq (next_val) SELECT COALESCE(MAX(id), 0) + 51 FROM order_item;
@@ -0,0 +1,15 @@
+-- Responses of requests sent with an Idempotency-Key, replayed to retries until they expire.
+-- status_code is NULL while the first request is still running.
+CREATE TABLE IF NOT EXISTS idempotency_key (
+  id BIGINT PRIMARY KEY AUTO_INCREMENT,
+  scope VARCHAR(60) NOT NULL,
+  idem_key VARCHAR(100) NOT NULL,
+  request_hash VARCHAR(64) NOT NULL,
+  status_code INT NULL,
+  response_body TEXT NULL,
+  created_at TIMESTAMP NOT NULL,
+  expires_at TIMESTAMP NOT NULL,
+  CONSTRAINT uk_idempotency_scope_key UNIQUE (scope, idem_key)
+);
+
+CREATE INDEX idx_idempotency_expires ON idempotency_key (expires_at);
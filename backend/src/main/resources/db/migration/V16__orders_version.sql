@@ -0,0 +1,2 @@
+-- Optimistic-lock version for orders; status changes are conditional on it
+ALTER TABLE orders ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
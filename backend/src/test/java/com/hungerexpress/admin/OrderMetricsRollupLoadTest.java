@@ -0,0 +1,16 @@
+package com.hungerexpress.admin;
+
+import org.junit.jupiter.api.Tag;
+
+/**
+ * The rollup checks over one million orders. Seeding takes minutes, so it only runs with
+ * {@code mvn test -Pperf}.
+ */
+@Tag("perf")
+class OrderMetricsRollupLoadTest extends OrderMetricsServiceTest {
+
+    @Override
+    int orderCount() {
+        return 1_000_000;
+    }
+}
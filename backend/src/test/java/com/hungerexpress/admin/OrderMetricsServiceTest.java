@@ -0,0 +1,151 @@
+package com.hungerexpress.admin;
+
+import com.hungerexpress.orders.OrderEntity;
+import com.hungerexpress.orders.OrderLifecycleEvent;
+import com.hungerexpress.orders.OrderStatus;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Orders over 90 days and 200 restaurants in H2: the rebuilt daily rollup and the admin reads
+ * served from it must agree with aggregating the orders table directly, and lifecycle events must
+ * move the same counters.
+ */
+@DataJpaTest
+@Import(OrderMetricsService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderMetricsServiceTest {
+
+    private static final int RESTAURANTS = 200;
+    private static final int DAYS = 90;
+
+    @Autowired JdbcTemplate jdbc;
+    @Autowired OrderMetricsService service;
+    @Autowired DailyOrderMetricsRepository metrics;
+
+    @BeforeAll
+    void seed() {
+        Random random = new Random(7);
+        Instant now = Instant.now();
+        List<Object[]> batch = new ArrayList<>(10_000);
+        OrderStatus[] statuses = {OrderStatus.PLACED, OrderStatus.ACCEPTED, OrderStatus.DELIVERED,
+                OrderStatus.DELIVERED, OrderStatus.DELIVERED, OrderStatus.CANCELLED};
+        for (long id = 1; id <= orderCount(); id++) {
+            BigDecimal total = BigDecimal.valueOf(100 + random.nextInt(90_000), 2);
+            BigDecimal discount = random.nextInt(10) == 0 ? new BigDecimal("10.00") : BigDecimal.ZERO;
+            // Every 50th order has no restaurant and lands in bucket 0
+            Long restaurantId = id % 50 == 0 ? null : (long) (1 + random.nextInt(RESTAURANTS));
+            Instant createdAt = now.minus(Duration.ofMinutes(random.nextInt(DAYS * 24 * 60)));
+            batch.add(new Object[]{id, restaurantId, statuses[random.nextInt(statuses.length)].name(),
+                    total, discount, total, Timestamp.from(createdAt)});
+            if (batch.size() == 10_000) insert(batch);
+        }
+        insert(batch);
+        service.rebuild();
+    }
+
+    // Small enough for every build; OrderMetricsRollupLoadTest runs the same checks at full size
+    int orderCount() {
+        return 5_000;
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbc.batchUpdate("INSERT INTO orders (id, version, restaurant_id, status, subtotal, discount, delivery_fee, tax, total, created_at) " +
+                "VALUES (?, 0, ?, ?, ?, ?, 0, 0, ?, ?)", batch);
+        batch.clear();
+    }
+
+    @Test
+    void rebuiltRollupMatchesTheOrdersTable() {
+        Map<Long, long[]> counts = new HashMap<>();
+        Map<Long, BigDecimal> gmv = new HashMap<>();
+        for (DailyOrderMetrics m : metrics.findAll()) {
+            // Rows added by the lifecycle test have no seeded orders behind them
+            if (m.getRestaurantId() > RESTAURANTS) continue;
+            long[] c = counts.computeIfAbsent(m.getRestaurantId(), k -> new long[3]);
+            c[0] += m.getOrderCount();
+            c[1] += m.getDeliveredCount();
+            c[2] += m.getCancelledCount();
+            gmv.merge(m.getRestaurantId(), m.getGmv(), BigDecimal::add);
+        }
+
+        List<Map<String, Object>> expected = jdbc.queryForList(
+                "SELECT COALESCE(restaurant_id, 0) AS rid, COUNT(*) AS n, SUM(total) AS gmv, " +
+                "SUM(CASE WHEN status = 'DELIVERED' THEN 1 ELSE 0 END) AS delivered, " +
+                "SUM(CASE WHEN status = 'CANCELLED' THEN 1 ELSE 0 END) AS cancelled " +
+                "FROM orders GROUP BY COALESCE(restaurant_id, 0)");
+        assertThat(counts).hasSize(expected.size());
+        for (Map<String, Object> row : expected) {
+            Long rid = ((Number) row.get("rid")).longValue();
+            assertThat(counts.get(rid)).containsExactly(((Number) row.get("n")).longValue(),
+                    ((Number) row.get("delivered")).longValue(), ((Number) row.get("cancelled")).longValue());
+            assertThat(gmv.get(rid)).isEqualByComparingTo((BigDecimal) row.get("gmv"));
+        }
+    }
+
+    @Test
+    void lifecycleEventsMoveTheDaysCounters() {
+        Long restaurantId = RESTAURANTS + 1L;
+        OrderEntity o = OrderEntity.builder()
+                .id(orderCount() + 1L)
+                .restaurantId(restaurantId)
+                .status(OrderStatus.PLACED)
+                .total(new BigDecimal("250.00"))
+                .discount(new BigDecimal("20.00"))
+                .deliveryFee(BigDecimal.ZERO)
+                .createdAt(Instant.now())
+                .build();
+        LocalDate today = OrderMetricsService.dayOf(o.getCreatedAt());
+
+        service.onOrderLifecycle(OrderLifecycleEvent.of(o, null));
+        service.onOrderLifecycle(OrderLifecycleEvent.of(o, OrderStatus.PLACED, OrderStatus.DELIVERED));
+        // Sent back from DELIVERED by an admin, then cancelled
+        service.onOrderLifecycle(OrderLifecycleEvent.of(o, OrderStatus.DELIVERED, OrderStatus.PLACED));
+        service.onOrderLifecycle(OrderLifecycleEvent.of(o, OrderStatus.PLACED, OrderStatus.CANCELLED));
+
+        DailyOrderMetrics m = metrics.findByMetricDateBetween(today, today).stream()
+                .filter(r -> r.getRestaurantId().equals(restaurantId))
+                .findFirst().orElseThrow();
+        assertThat(m.getOrderCount()).isEqualTo(1);
+        assertThat(m.getGmv()).isEqualByComparingTo("250.00");
+        assertThat(m.getDiscount()).isEqualByComparingTo("20.00");
+        assertThat(m.getDeliveredCount()).isZero();
+        assertThat(m.getCancelledCount()).isEqualTo(1);
+    }
+
+    @Test
+    void topRestaurantsMatchTheOrdersTable() {
+        List<Long> fromRollup = metrics.topRestaurantsByGmv(PageRequest.of(0, 5)).stream()
+                .map(r -> (Long) r[0]).toList();
+        List<Long> fromOrders = scanTopRestaurants().stream()
+                .map(r -> ((Number) r.get("rid")).longValue()).toList();
+        assertThat(fromRollup).isEqualTo(fromOrders);
+    }
+
+    private List<Map<String, Object>> scanTopRestaurants() {
+        return jdbc.queryForList("SELECT COALESCE(restaurant_id, 0) AS rid, SUM(total) AS gmv FROM orders " +
+                "GROUP BY COALESCE(restaurant_id, 0) ORDER BY gmv DESC LIMIT 5");
+    }
+}
@@ -0,0 +1,135 @@
+package com.hungerexpress.menu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import com.hungerexpress.restaurant.Cuisine;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A public menu is loaded with one statement, rendered to JSON once, and served from that snapshot
+ * (with a 304 for a matching ETag) until the restaurant's menu changes.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({MenuService.class, MenuCache.class, MenuController.class, MenuServiceTest.Meters.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MenuServiceTest {
+
+    @TestConfiguration
+    static class Meters {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired RestaurantRepository restaurants;
+    @Autowired MenuCategoryRepository categories;
+    @Autowired MenuItemRepository items;
+    @Autowired MenuService menu;
+    @Autowired MenuCache cache;
+    @Autowired MenuController controller;
+    @Autowired ObjectMapper json;
+    @Autowired EntityManagerFactory emf;
+
+    private Statistics stats;
+    private Restaurant restaurant;
+    private MenuCategory mains;
+
+    @BeforeEach
+    void seed() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        restaurant = restaurants.save(Restaurant.builder()
+                .ownerId(1L).name("Spice Route").cuisine(Cuisine.INDIAN).address("1 Main St").city("Pune")
+                .approved(true).build());
+        mains = categories.save(category("Mains", 1));
+        categories.save(category("Drinks", 2)); // nothing approved yet
+        MenuCategory starters = categories.save(category("Starters", 0));
+        for (int i = 0; i < 30; i++) {
+            items.save(item(i % 2 == 0 ? mains : starters, "Dish " + i, MenuItem.ApprovalStatus.APPROVED));
+        }
+        items.save(item(mains, "Secret dish", MenuItem.ApprovalStatus.PENDING));
+    }
+
+    @Test
+    void menuLoadsInOneStatement() {
+        stats.clear();
+        List<MenuCategory> loaded = menu.categoriesWithItems(restaurant.getId());
+
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(loaded).extracting(MenuCategory::getName).containsExactly("Starters", "Mains", "Drinks");
+        assertThat(loaded).extracting(c -> c.getItems().size()).containsExactly(15, 15, 0);
+        assertThat(loaded.get(1).getItems()).extracting(MenuItem::getName).doesNotContain("Secret dish");
+    }
+
+    @Test
+    void unknownRestaurantStillFails() {
+        assertThatThrownBy(() -> menu.categoriesWithItems(-1L)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void snapshotIsRenderedOnceUntilTheMenuChanges() throws Exception {
+        MenuCache.Snapshot first = menu.snapshot(restaurant.getId());
+        JsonNode body = json.readTree(first.json());
+        assertThat(body).hasSize(3);
+        assertThat(body.get(0).get("items")).hasSize(15);
+
+        stats.clear();
+        assertThat(menu.snapshot(restaurant.getId())).isSameAs(first);
+        assertThat(stats.getPrepareStatementCount()).isZero();
+
+        items.save(item(mains, "New dish", MenuItem.ApprovalStatus.APPROVED));
+        cache.onCatalogChanged(CatalogChangedEvent.menu(restaurant.getId()));
+        MenuCache.Snapshot second = menu.snapshot(restaurant.getId());
+        assertThat(second.etag()).isNotEqualTo(first.etag());
+        assertThat(json.readTree(second.json()).get(1).get("items")).hasSize(16);
+    }
+
+    @Test
+    void matchingEtagIsNotModified() {
+        ResponseEntity<byte[]> full = controller.get(restaurant.getId(), null);
+        assertThat(full.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String etag = full.getHeaders().getETag();
+
+        ResponseEntity<byte[]> again = controller.get(restaurant.getId(), etag);
+        assertThat(again.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(again.getBody()).isNull();
+        assertThat(controller.get(restaurant.getId(), "W/" + etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    private MenuCategory category(String name, int position) {
+        return MenuCategory.builder().restaurant(restaurant).name(name).position(position).build();
+    }
+
+    private MenuItem item(MenuCategory category, String name, MenuItem.ApprovalStatus status) {
+        return MenuItem.builder().restaurant(restaurant).category(category).name(name)
+                .price(new BigDecimal("120.00")).approvalStatus(status).build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.hungerexpress.orders;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 200 agents racing for 50 PLACED orders through {@link OrderTransitions#accept}: every order ends
+ * up ACCEPTED by exactly one of them, and the others are turned away with a conflict.
+ * Runs against H2 without a test transaction, so each accept commits on its own as in production.
+ */
+@DataJpaTest
+@Import({OrderTransitions.class, OrderClaims.class, LiveOrderBoard.class, OrderClaimRaceTest.Meters.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderClaimRaceTest {
+
+    private static final int ORDERS = 50;
+    private static final int AGENTS = 200;
+
+    @TestConfiguration
+    static class Meters {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired OrderRepository orders;
+    @Autowired OrderTransitions transitions;
+
+    @Test
+    void everyOrderHasExactlyOneWinner() throws Exception {
+        orders.deleteAll();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) ids.add(orders.save(placed(null)).getId());
+
+        Map<Long, List<Long>> winners = new ConcurrentHashMap<>();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(AGENTS);
+        for (int a = 1; a <= AGENTS; a++) {
+            long agentId = a;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    // Every agent goes after every order, in a different order each
+                    for (int i = 0; i < ORDERS; i++) {
+                        Long orderId = ids.get((int) ((agentId + i) % ORDERS));
+                        try {
+                            transitions.accept(orderId, agentId).ifPresent(o -> {
+                                if (o.getAssignedTo().equals(agentId)) {
+                                    winners.computeIfAbsent(orderId, k -> new CopyOnWriteArrayList<>()).add(agentId);
+                                }
+                            });
+                        } catch (OrderConflictException lost) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(failed).hasValue(0);
+        assertThat(winners).hasSize(ORDERS);
+        winners.values().forEach(w -> assertThat(w).hasSize(1));
+        assertThat(refused).hasValue(ORDERS * AGENTS - ORDERS);
+        for (Long id : ids) {
+            OrderEntity o = orders.findById(id).orElseThrow();
+            assertThat(o.getStatus()).isEqualTo(OrderStatus.ACCEPTED);
+            assertThat(o.getAssignedTo()).isEqualTo(winners.get(id).get(0));
+        }
+    }
+
+    @Test
+    void onlyTheHoldingAgentCanRejectAnOrder() {
+        Long id = orders.save(placed(7L)).getId();
+
+        assertThatThrownBy(() -> transitions.reject(id, 8L)).isInstanceOf(OrderConflictException.class);
+        assertThat(orders.findById(id).orElseThrow().getAssignedTo()).isEqualTo(7L);
+
+        OrderEntity back = transitions.reject(id, 7L).orElseThrow();
+        assertThat(back.getStatus()).isEqualTo(OrderStatus.PLACED);
+        assertThat(back.getAssignedTo()).isNull();
+        // Back in the pool, so another agent can take it
+        assertThat(transitions.accept(id, 8L).orElseThrow().getAssignedTo()).isEqualTo(8L);
+    }
+
+    private static OrderEntity placed(Long assignedTo) {
+        return OrderEntity.builder()
+                .userId(1L)
+                .restaurantId(1L)
+                .assignedTo(assignedTo)
+                .status(OrderStatus.PLACED)
+                .subtotal(new BigDecimal("100.00"))
+                .deliveryFee(BigDecimal.ZERO)
+                .tax(BigDecimal.ZERO)
+                .total(new BigDecimal("100.00"))
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.hungerexpress.orders;
+
+import com.hungerexpress.cart.CartStore;
+import com.hungerexpress.cart.CartWriteBehind;
+import com.hungerexpress.menu.MenuCategory;
+import com.hungerexpress.menu.MenuCategoryRepository;
+import com.hungerexpress.menu.MenuItem;
+import com.hungerexpress.menu.MenuItemRepository;
+import com.hungerexpress.menu.MenuPriceTable;
+import com.hungerexpress.restaurant.Cuisine;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Orders per second through {@link OrderPlacementService#place} for 20-item baskets, placed from
+ * several threads against H2: once with JDBC batching turned off for the session, so every order
+ * and item row is its own round trip as under the per-row saves, and once batched as configured.
+ * Logs both rates; asserts only that every order landed with all its items.
+ */
+@Tag("perf")
+@DataJpaTest
+@Import({OrderPlacementService.class, MenuPriceTable.class, LiveOrderBoard.class, CartStore.class, CartWriteBehind.class,
+        OrderPlacementLoadTest.Meters.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OrderPlacementLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPlacementLoadTest.class);
+    private static final int MENU_ITEMS = 200;
+    private static final int BASKET = 20;
+    private static final int ORDERS = 2_000;
+    private static final int THREADS = 8;
+
+    @TestConfiguration
+    static class Meters {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired RestaurantRepository restaurants;
+    @Autowired MenuCategoryRepository categories;
+    @Autowired MenuItemRepository items;
+    @Autowired OrderPlacementService placement;
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager txManager;
+    @Autowired JdbcTemplate jdbc;
+
+    private final List<Long> menuItemIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        Restaurant restaurant = restaurants.save(Restaurant.builder()
+                .ownerId(1L).name("Spice Route").cuisine(Cuisine.INDIAN).address("1 Main St").city("Pune")
+                .approved(true).build());
+        MenuCategory mains = categories.save(MenuCategory.builder().restaurant(restaurant).name("Mains").position(0).build());
+        for (int i = 0; i < MENU_ITEMS; i++) {
+            menuItemIds.add(items.save(MenuItem.builder().restaurant(restaurant).category(mains).name("Dish " + i)
+                    .price(BigDecimal.valueOf(5_000 + i * 25L, 2)).approvalStatus(MenuItem.ApprovalStatus.APPROVED)
+                    .build()).getId());
+        }
+    }
+
+    @Test
+    void twentyItemBasketsPerSecond() throws Exception {
+        // Warm the price table, the connection pool and the JIT before measuring either way
+        run(200, true);
+        double unbatched = run(ORDERS, false);
+        double batched = run(ORDERS, true);
+        log.info("{} orders of {} items on {} threads: {} orders/s with one INSERT per row, {} orders/s batched",
+                ORDERS, BASKET, THREADS, Math.round(unbatched), Math.round(batched));
+    }
+
+    private double run(int count, boolean batched) throws Exception {
+        long ordersBefore = count("orders");
+        long itemsBefore = count("order_item");
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<OrderEntity>> placed = new ArrayList<>(count);
+        long start = System.nanoTime();
+        for (int n = 0; n < count; n++) {
+            OrdersController.CreateOrderRequest req = basket(new Random(n));
+            long uid = 1 + n % 100;
+            placed.add(pool.submit(() -> tx.execute(s -> {
+                // place() joins this transaction, so the setting applies to its flush
+                if (!batched) em.unwrap(Session.class).setJdbcBatchSize(1);
+                return placement.place(uid, null, req);
+            })));
+        }
+        for (Future<OrderEntity> f : placed) assertThat(f.get().getItems()).hasSize(BASKET);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        assertThat(count("orders") - ordersBefore).isEqualTo(count);
+        assertThat(count("order_item") - itemsBefore).isEqualTo((long) count * BASKET);
+        return count / seconds;
+    }
+
+    private OrdersController.CreateOrderRequest basket(Random random) {
+        List<OrdersController.OrderItemRequest> lines = new ArrayList<>(BASKET);
+        int first = random.nextInt(MENU_ITEMS - BASKET);
+        for (int i = 0; i < BASKET; i++) {
+            lines.add(new OrdersController.OrderItemRequest(menuItemIds.get(first + i), null, null, 1 + random.nextInt(3)));
+        }
+        return new OrdersController.CreateOrderRequest(null, null, null, lines);
+    }
+
+    private long count(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,146 @@
+package com.hungerexpress.revenue;
+
+import com.hungerexpress.agent.AgentOrderRepository;
+import com.hungerexpress.common.AuthUser;
+import com.hungerexpress.user.User;
+import com.hungerexpress.user.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+/**
+ * Agents with many assignments each: the earnings endpoints must answer with a fixed number of
+ * statements however many assignments an agent has (one per assignment would show up as 50), and
+ * with the same figures as adding up the delivered orders directly.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AgentEarningsControllerTest {
+
+    private static final int AGENTS = 50;
+    private static final int ASSIGNMENTS_PER_AGENT = 50;
+
+    @Autowired JdbcTemplate jdbc;
+    @Autowired UserRepository users;
+    @Autowired AgentOrderRepository assignments;
+    @Autowired EntityManagerFactory emf;
+
+    private AgentEarningsController controller;
+    private Statistics stats;
+    private final List<Long> agentIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        controller = new AgentEarningsController(users, assignments);
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        for (int a = 0; a < AGENTS; a++) {
+            agentIds.add(users.save(User.builder()
+                    .email("agent" + a + "@example.com")
+                    .password("x")
+                    .fullName("Agent " + a)
+                    .role("AGENT")
+                    .build()).getId());
+        }
+
+        Random random = new Random(11);
+        Instant now = Instant.now();
+        List<Object[]> orders = new ArrayList<>();
+        List<Object[]> links = new ArrayList<>();
+        long orderId = 0;
+        for (Long agentId : agentIds) {
+            for (int i = 0; i < ASSIGNMENTS_PER_AGENT; i++) {
+                orderId++;
+                boolean delivered = random.nextInt(4) != 0;
+                Instant assignedAt = now.minus(Duration.ofMinutes(random.nextInt(120 * 24 * 60)));
+                // A quarter of the orders carry no delivery fee and earn the base fee
+                BigDecimal fee = random.nextInt(4) == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(2_000 + random.nextInt(8_000), 2);
+                orders.add(new Object[]{orderId, agentId, delivered ? "DELIVERED" : "OUT_FOR_DELIVERY", fee,
+                        Timestamp.from(assignedAt), delivered ? Timestamp.from(assignedAt.plus(Duration.ofMinutes(30))) : null});
+                links.add(new Object[]{agentId, orderId, Timestamp.from(assignedAt)});
+            }
+        }
+        flush(orders, links);
+    }
+
+    private void flush(List<Object[]> orders, List<Object[]> links) {
+        jdbc.batchUpdate("INSERT INTO orders (id, version, assigned_to, status, subtotal, discount, delivery_fee, tax, total, created_at, delivered_at) " +
+                "VALUES (?, 0, ?, ?, 100, 0, ?, 0, 100, ?, ?)", orders);
+        jdbc.batchUpdate("INSERT INTO agent_order_assignment (agent_id, order_id, assigned_at) VALUES (?, ?, ?)", links);
+        orders.clear();
+        links.clear();
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void summaryIsOneQueryAndMatchesTheOrders() {
+        Long agentId = agentIds.get(AGENTS / 2);
+        signInAs(agentId);
+
+        stats.clear();
+        Map<String, Object> summary = controller.getEarnings().getBody();
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+
+        Map<String, Object> expected = jdbc.queryForMap(
+                "SELECT COUNT(*) AS n, SUM(CASE WHEN delivery_fee = 0 THEN 50 ELSE delivery_fee END) * 0.80 AS earned " +
+                "FROM orders WHERE assigned_to = ? AND status = 'DELIVERED'", agentId);
+        assertThat(summary.get("totalDeliveries")).isEqualTo(((Number) expected.get("n")).intValue());
+        assertThat((Double) summary.get("totalEarnings")).isCloseTo(((Number) expected.get("earned")).doubleValue(), offset(0.01));
+        assertThat((List<?>) summary.get("monthlyBreakdown")).isNotEmpty();
+    }
+
+    @Test
+    void historyIsOneQueryPerRequest() {
+        Long agentId = agentIds.get(0);
+        signInAs(agentId);
+
+        stats.clear();
+        List<Map<String, Object>> history = controller.getDeliveryHistory().getBody();
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(history).hasSize(ASSIGNMENTS_PER_AGENT);
+    }
+
+    @Test
+    void adminListIsTwoQueriesForEveryAgent() {
+        stats.clear();
+        List<AgentEarningsController.AgentEarningsAdmin> all = controller.getAllAgentEarnings().getBody();
+
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(all).hasSize(AGENTS);
+        Long delivered = jdbc.queryForObject("SELECT COUNT(*) FROM orders WHERE status = 'DELIVERED'", Long.class);
+        assertThat(all.stream().mapToLong(AgentEarningsController.AgentEarningsAdmin::totalDeliveries).sum()).isEqualTo(delivered);
+    }
+
+    private static void signInAs(Long agentId) {
+        AuthUser principal = new AuthUser(agentId, "agent@example.com", "AGENT");
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+}
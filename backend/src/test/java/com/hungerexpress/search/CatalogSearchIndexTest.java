@@ -0,0 +1,185 @@
+package com.hungerexpress.search;
+
+import com.hungerexpress.menu.MenuItemRepository;
+import com.hungerexpress.restaurant.CatalogChangedEvent;
+import com.hungerexpress.restaurant.Cuisine;
+import com.hungerexpress.restaurant.Restaurant;
+import com.hungerexpress.restaurant.RestaurantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exact, prefix, typo and single-character matching over restaurants and their dishes, the usual
+ * listing filters, re-indexing on catalog changes, and the same hits as scanning every restaurant
+ * for a word starting with the query.
+ */
+class CatalogSearchIndexTest {
+
+    private static final String[] CITIES = {"pune", "mumbai", "delhi", "chennai", "kolkata"};
+
+    private final Random random = new Random(3);
+    private final List<Restaurant> restaurants = new ArrayList<>();
+    private final List<Object[]> dishes = new ArrayList<>();
+    private final List<String> words = new ArrayList<>();
+    private RestaurantRepository restaurantRepo;
+    private MenuItemRepository itemRepo;
+    private CatalogSearchIndex index;
+
+    @BeforeEach
+    void seed() {
+        add(restaurant(1L, "Royal Biryani House", Cuisine.INDIAN, 4.5), "Chicken Dum Biryani", "Raita");
+        add(restaurant(2L, "Pizza Corner", Cuisine.PIZZA, 4.0), "Margherita", "Farmhouse Pizza");
+        add(restaurant(3L, "Xpress Diner", Cuisine.AMERICAN, 3.5), "Cheese Burger");
+        add(restaurant(4L, "Hidden Biryani", Cuisine.INDIAN, 5.0), "Mutton Biryani");
+        restaurants.get(3).setApproved(false);
+        add(restaurant(5L, "Closed Biryani", Cuisine.INDIAN, 5.0), "Veg Biryani");
+        restaurants.get(4).setActive(false);
+        build();
+    }
+
+    @Test
+    void matchesExactPrefixAndTypos() {
+        assertThat(ids("biryani")).containsExactly(1L);
+        assertThat(ids("bir")).containsExactly(1L);
+        assertThat(ids("biriyani")).containsExactly(1L);
+        // Dish names are searchable too
+        assertThat(ids("margherita")).containsExactly(2L);
+        // Every token must match
+        assertThat(ids("pizza biryani")).isEmpty();
+    }
+
+    @Test
+    void singleCharacterQueriesFallBackToPrefixScans() {
+        assertThat(ids("x")).containsExactly(3L);
+        assertThat(ids("p")).contains(2L);
+        // A single character next to a real word is ignored rather than narrowing the search
+        assertThat(ids("pizza c")).containsExactly(2L);
+        assertThat(ids("-")).isEmpty();
+    }
+
+    @Test
+    void appliesTheListingFilters() {
+        assertThat(index.search("biryani", Cuisine.PIZZA, null)).isEmpty();
+        assertThat(index.search("corner", null, 4.5)).isEmpty();
+        assertThat(index.search("corner", Cuisine.PIZZA, 4.0)).extracting(Restaurant::getId).containsExactly(2L);
+    }
+
+    @Test
+    void reindexesOnCatalogChanges() {
+        when(itemRepo.findApprovedNamesByRestaurantId(2L)).thenReturn(List.of("Garlic Bread"));
+        index.onCatalogChanged(CatalogChangedEvent.menu(2L));
+        assertThat(ids("margherita")).isEmpty();
+        assertThat(ids("garlic")).containsExactly(2L);
+        assertThat(ids("mar")).isEmpty();
+
+        when(restaurantRepo.findById(3L)).thenReturn(Optional.empty());
+        index.onCatalogChanged(CatalogChangedEvent.listing(3L));
+        assertThat(ids("xpress")).isEmpty();
+    }
+
+    @Test
+    void shortPrefixesReachEveryMatchingRestaurant() {
+        restaurants.clear();
+        dishes.clear();
+        // Far more distinct "pi..." words than a capped walk of the dictionary would visit
+        for (long id = 1; id <= 500; id++) add(restaurant(id, "Pi" + Long.toString(id * 7919, 36) + " Kitchen", Cuisine.ITALIAN, 4.0));
+        build();
+        assertThat(ids("pi")).hasSize(500);
+        assertThat(ids("p")).hasSize(500);
+        assertThat(ids("kit")).hasSize(500);
+    }
+
+    @Test
+    void matchesWhatAScanOfEveryRestaurantFinds() {
+        restaurants.clear();
+        dishes.clear();
+        // A few thousand made-up words, so a query hits tens of restaurants rather than a third of them
+        for (int w = 0; w < 3_000; w++) {
+            StringBuilder sb = new StringBuilder();
+            for (int c = 5 + random.nextInt(4); c > 0; c--) sb.append((char) ('a' + random.nextInt(26)));
+            words.add(sb.toString());
+        }
+        for (long id = 1; id <= 20_000; id++) {
+            add(restaurant(id, word() + " " + word() + " " + id, Cuisine.values()[random.nextInt(Cuisine.values().length)],
+                    random.nextDouble() * 5), word() + " " + word(), word(), word());
+        }
+        build();
+        Map<Long, List<String>> byRestaurant = new HashMap<>();
+        for (Restaurant r : restaurants) byRestaurant.put(r.getId(), new ArrayList<>(split(r.getName() + " " + r.getCity())));
+        for (Object[] d : dishes) byRestaurant.get((Long) d[1]).addAll(split((String) d[2]));
+        String[] queries = new String[200];
+        for (int q = 0; q < queries.length; q++) {
+            String w = word();
+            queries[q] = q % 3 == 0 ? w.substring(0, 3) : w;
+        }
+        // Same hits as scanning every name, city and dish for a word starting with each query
+        for (String q : queries) {
+            assertThat(ids(q)).containsExactlyInAnyOrderElementsOf(scan(byRestaurant, q));
+        }
+    }
+
+    // What the SQL search did, in memory: every restaurant's words checked against the query
+    private static List<Long> scan(Map<Long, List<String>> words, String query) {
+        List<Long> out = new ArrayList<>();
+        for (Map.Entry<Long, List<String>> e : words.entrySet()) {
+            for (String t : e.getValue()) {
+                if (t.startsWith(query)) {
+                    out.add(e.getKey());
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static List<String> split(String text) {
+        return List.of(text.toLowerCase(Locale.ROOT).split("[^\\p{Alnum}]+"));
+    }
+
+    private void build() {
+        restaurantRepo = mock(RestaurantRepository.class);
+        itemRepo = mock(MenuItemRepository.class);
+        when(restaurantRepo.findAll()).thenReturn(restaurants);
+        when(restaurantRepo.findById(any())).thenAnswer(inv ->
+                restaurants.stream().filter(r -> r.getId().equals(inv.getArgument(0))).findFirst());
+        when(itemRepo.findApprovedNamesAfter(eq(0L), any())).thenReturn(dishes);
+        when(itemRepo.findApprovedNamesAfter(eq((long) dishes.size()), any())).thenReturn(List.of());
+        index = new CatalogSearchIndex(restaurantRepo, itemRepo);
+        index.build();
+    }
+
+    private void add(Restaurant r, String... dishNames) {
+        restaurants.add(r);
+        for (String name : dishNames) dishes.add(new Object[]{(long) dishes.size() + 1, r.getId(), name});
+    }
+
+    private Restaurant restaurant(Long id, String name, Cuisine cuisine, double rating) {
+        return Restaurant.builder()
+                .id(id).ownerId(id).name(name).cuisine(cuisine).rating(rating)
+                .address("1 Main St").city(CITIES[(int) (id % CITIES.length)])
+                .approved(true).active(true)
+                .build();
+    }
+
+    private String word() {
+        return words.get(random.nextInt(words.size()));
+    }
+
+    private List<Long> ids(String query) {
+        return index.search(query, null, null).stream().map(Restaurant::getId).toList();
+    }
+}
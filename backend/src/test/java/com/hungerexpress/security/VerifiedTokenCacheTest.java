@@ -0,0 +1,101 @@
+package com.hungerexpress.security;
+
+import com.hungerexpress.auth.JwtService;
+import com.hungerexpress.common.AuthUser;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The auth filter verifies a token's signature once, on its first request; later requests with the
+ * same token are served from {@link VerifiedTokenCache}. Invalid and expired tokens are never cached.
+ */
+class VerifiedTokenCacheTest {
+
+    private static final String SECRET = "ZmFrZS1kZXYtc2VjcmV0LWFhc2RmMTIzNDU2Nzg5MHg=";
+
+    private JwtService jwt;
+    private VerifiedTokenCache cache;
+    private JwtAuthFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwt = spy(jwtService(3_600_000));
+        cache = new VerifiedTokenCache(jwt, true, 10_000, 300_000);
+        filter = new JwtAuthFilter(cache);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void repeatedRequestsVerifyTheTokenOnce() throws Exception {
+        String token = token(jwt, 42L, "AGENT");
+
+        for (int i = 0; i < 5; i++) {
+            Authentication auth = authenticate(token);
+            assertThat(auth.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_AGENT");
+            AuthUser user = (AuthUser) auth.getPrincipal();
+            assertThat(user.id()).isEqualTo(42L);
+        }
+        verify(jwt, times(1)).parse(token);
+        assertThat(cache.stats().hitCount()).isEqualTo(4);
+    }
+
+    @Test
+    void invalidTokensAreNeverCached() {
+        String forged = token(jwt, 1L, "ADMIN") + "x";
+
+        assertThatThrownBy(() -> cache.verify(forged)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> cache.verify(forged)).isInstanceOf(JwtException.class);
+        verify(jwt, times(2)).parse(forged);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void expiredTokensAreRejected() throws Exception {
+        JwtService shortLived = jwtService(1);
+        String token = token(shortLived, 7L, "CUSTOMER");
+        Thread.sleep(1_100); // JWT expiry has second precision
+
+        assertThatThrownBy(() -> cache.verify(token)).isInstanceOf(JwtException.class);
+        assertThat(authenticate(token)).isNull();
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders/mine");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static JwtService jwtService(long ttlMs) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "secret", SECRET);
+        ReflectionTestUtils.setField(service, "ttlMs", ttlMs);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+
+    private static String token(JwtService service, Long uid, String role) {
+        return service.generate(Map.of("uid", uid, "role", role), "user" + uid + "@example.com");
+    }
+}
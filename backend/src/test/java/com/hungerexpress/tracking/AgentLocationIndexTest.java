@@ -0,0 +1,105 @@
+package com.hungerexpress.tracking;
+
+import com.hungerexpress.agent.AgentProfile;
+import com.hungerexpress.agent.AgentProfileRepository;
+import com.hungerexpress.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 20k available agents spread over a city-sized box: grid radius and k-nearest queries must return
+ * exactly what a scan of every agent returns.
+ */
+class AgentLocationIndexTest {
+
+    private static final int AGENTS = 20_000;
+    private static final double LAT0 = 12.85, LNG0 = 77.45, SPAN = 0.4; // ~45 km square
+
+    private final Random random = new Random(42);
+    private final List<AgentProfile> profiles = new ArrayList<>();
+    private AgentLocationIndex index;
+
+    @BeforeEach
+    void seed() {
+        for (long id = 1; id <= AGENTS; id++) {
+            profiles.add(AgentProfile.builder()
+                    .userId(id)
+                    .isAvailable(id % 10 != 0) // every tenth agent is offline
+                    .currentLatitude(LAT0 + random.nextDouble() * SPAN)
+                    .currentLongitude(LNG0 + random.nextDouble() * SPAN)
+                    .lastLocationUpdate(Instant.now())
+                    .rating(1 + random.nextDouble() * 4)
+                    .build());
+        }
+        AgentProfileRepository repo = mock(AgentProfileRepository.class);
+        UserRepository users = mock(UserRepository.class);
+        when(repo.findAll()).thenReturn(profiles);
+        when(users.findAllById(any())).thenReturn(List.of());
+        index = new AgentLocationIndex(repo, users, 0.02);
+        index.seed();
+    }
+
+    @Test
+    void radiusQueriesMatchAFullScan() {
+        for (int q = 0; q < 200; q++) {
+            double lat = LAT0 + random.nextDouble() * SPAN, lng = LNG0 + random.nextDouble() * SPAN;
+            double radius = 0.5 + random.nextDouble() * 5;
+            assertThat(ids(index.within(lat, lng, radius))).isEqualTo(ids(scan(lat, lng, radius, Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void nearestQueriesMatchAFullScan() {
+        for (int q = 0; q < 200; q++) {
+            double lat = LAT0 + random.nextDouble() * SPAN, lng = LNG0 + random.nextDouble() * SPAN;
+            int k = 1 + random.nextInt(20);
+            List<AgentLocationIndex.Nearby> got = index.nearest(lat, lng, k, 10);
+            List<AgentLocationIndex.Nearby> want = scan(lat, lng, 10, k);
+            assertThat(got).hasSize(want.size());
+            // Ties aside, the same distances in the same order
+            for (int i = 0; i < got.size(); i++) {
+                assertThat(got.get(i).distanceKm()).isCloseTo(want.get(i).distanceKm(), offset(1e-9));
+            }
+        }
+    }
+
+    @Test
+    void movesAndAvailabilityChangesKeepTheGridCurrent() {
+        AgentProfile p = profiles.get(0);
+        index.moveTo(p.getUserId(), 13.0, 77.6, Instant.now());
+        assertThat(ids(index.within(13.0, 77.6, 0.01))).contains(p.getUserId());
+
+        p.setIsAvailable(false);
+        p.setLastLocationUpdate(Instant.now().plusSeconds(1));
+        index.upsert(p);
+        assertThat(ids(index.within(13.0, 77.6, 0.01))).doesNotContain(p.getUserId());
+        assertThat(index.availableCount()).isEqualTo(AGENTS - AGENTS / 10 - 1);
+    }
+
+    // What the tracking endpoints did before the index: every available agent, distance, sort
+    private List<AgentLocationIndex.Nearby> scan(double lat, double lng, double radiusKm, int k) {
+        List<AgentLocationIndex.Nearby> out = new ArrayList<>();
+        for (AgentLocationIndex.AgentPoint a : index.active()) {
+            double d = AgentLocationIndex.distanceKm(lat, lng, a.latitude(), a.longitude());
+            if (d <= radiusKm) out.add(new AgentLocationIndex.Nearby(a, d));
+        }
+        out.sort(Comparator.comparingDouble(AgentLocationIndex.Nearby::distanceKm));
+        return out.size() > k ? out.subList(0, k) : out;
+    }
+
+    private static List<Long> ids(List<AgentLocationIndex.Nearby> hits) {
+        return hits.stream().map(n -> n.agent().agentId()).sorted().toList();
+    }
+}